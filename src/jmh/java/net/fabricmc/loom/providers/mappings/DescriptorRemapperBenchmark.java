@@ -0,0 +1,139 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.providers.mappings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping;
+import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping.Field;
+import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping.Method;
+
+/** Compares remapping every member descriptor of an Intermediary file between the old regex approach and {@link DescriptorRemapper} */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptorRemapperBenchmark {
+	private static final Pattern CLASS_FINDER = Pattern.compile("L([^;]+);");
+
+	/** Path to a real official to intermediary tiny file, synthetic mappings are used if left empty */
+	@Param("")
+	public String intermediaryFile;
+
+	private String[] descriptors;
+	private UnaryOperator<String> classRemapper;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Path mappings;
+		if (intermediaryFile.isEmpty()) {
+			mappings = Files.createTempFile("loom-jmh", ".tiny");
+			new SyntheticMappings(6000, 8, 12, 1337L).writeIntermediaryV1(mappings);
+		} else {
+			mappings = Paths.get(intermediaryFile);
+		}
+
+		MappingBlob intermediaries = new MappingBlob();
+		TinyReader.readTiny(mappings, "official", "intermediary", intermediaries);
+		if (intermediaryFile.isEmpty()) Files.delete(mappings);
+
+		List<String> descriptors = new ArrayList<>();
+		for (Mapping mapping : intermediaries) {
+			for (Field field : mapping.fields()) {
+				descriptors.add(field.fromDesc);
+			}
+
+			for (Method method : mapping.methods()) {
+				descriptors.add(method.fromDesc);
+			}
+		}
+		this.descriptors = descriptors.toArray(new String[0]);
+
+		classRemapper = name -> {
+			String mapping = intermediaries.tryMapName(name);
+			return mapping != null ? mapping : name;
+		};
+	}
+
+	private static String regexRemapDesc(String desc, UnaryOperator<String> classRemapper) {
+		StringBuffer buf = new StringBuffer();
+
+		Matcher matcher = CLASS_FINDER.matcher(desc);
+		while (matcher.find()) {
+			matcher.appendReplacement(buf, Matcher.quoteReplacement('L' + classRemapper.apply(matcher.group(1)) + ';'));
+		}
+		matcher.appendTail(buf);
+
+		return buf.toString();
+	}
+
+	@Benchmark
+	public void regex(Blackhole blackhole) {
+		for (String desc : descriptors) {
+			blackhole.consume(regexRemapDesc(desc, classRemapper));
+		}
+	}
+
+	@Benchmark
+	public void scanner(Blackhole blackhole) {
+		for (String desc : descriptors) {
+			blackhole.consume(DescriptorRemapper.remapDesc(desc, classRemapper));
+		}
+	}
+
+	@Benchmark
+	public void cachedScanner(Blackhole blackhole) {
+		DescriptorRemapper remapper = new DescriptorRemapper(classRemapper);
+
+		for (String desc : descriptors) {
+			blackhole.consume(remapper.remap(desc));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.providers.mappings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.fabricmc.loom.providers.mappings.MappingBlob.InvertionTarget;
+import net.fabricmc.loom.providers.mappings.MappingSplat.CombinedMapping;
+import net.fabricmc.loom.providers.mappings.MappingSplat.CombinedMapping.CombinedField;
+import net.fabricmc.loom.providers.mappings.MappingSplat.CombinedMapping.CombinedMethod;
+
+/** Benchmarks each stage of merging a mappings stack, as {@link net.fabricmc.loom.providers.MappingsProvider} does */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2G"})
+public class MappingsBenchmark {
+	/** Roughly how many classes a modern Minecraft version has */
+	@Param("6000")
+	public int classes;
+
+	private Path workDir;
+	private Path fullV1, intermediaryV1, yarnV2, enigmaZip, output;
+
+	private MappingBlob intermediaries, inversion, yarn, officialYarn, renamed;
+	private MappingSplat combined;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		workDir = Files.createTempDirectory("loom-jmh");
+
+		SyntheticMappings mappings = new SyntheticMappings(classes, 8, 12, 1337L);
+		mappings.writeFullV1(fullV1 = workDir.resolve("full.tiny"));
+		mappings.writeIntermediaryV1(intermediaryV1 = workDir.resolve("intermediary.tiny"));
+		mappings.writeYarnV2(yarnV2 = workDir.resolve("yarn-v2.tiny"));
+		mappings.writeEnigma(enigmaZip = workDir.resolve("yarn-enigma.zip"));
+		output = workDir.resolve("output.tiny");
+
+		TinyReader.readTiny(intermediaryV1, "official", "intermediary", intermediaries = new MappingBlob());
+		inversion = intermediaries.invert(InvertionTarget.MEMBERS);
+
+		TinyReader.readTiny(yarnV2, "intermediary", "named", yarn = new MappingBlob());
+		TinyReader.readComments(yarnV2, "intermediary", null, yarn);
+		TinyReader.readTiny(fullV1, "official", "named", officialYarn = new MappingBlob());
+
+		renamed = yarn.rename(inversion);
+		combined = new MappingSplat(renamed, intermediaries);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(workDir.toFile());
+	}
+
+	@Benchmark
+	public MappingBlob readTinyV1() throws IOException {
+		MappingBlob blob = new MappingBlob();
+		TinyReader.readTiny(intermediaryV1, "official", "intermediary", blob);
+		return blob;
+	}
+
+	@Benchmark
+	public MappingBlob readTinyV2() throws IOException {
+		MappingBlob blob = new MappingBlob();
+		TinyReader.readTiny(yarnV2, "intermediary", "named", blob);
+		TinyReader.readComments(yarnV2, "intermediary", null, blob);
+		return blob;
+	}
+
+	@Benchmark
+	public MappingBlob readEnigma() throws IOException {
+		MappingBlob blob = new MappingBlob();
+		EnigmaReader.readEnigma(enigmaZip, blob);
+		return blob;
+	}
+
+	@Benchmark
+	public MappingBlob invert() {
+		return intermediaries.invert(InvertionTarget.MEMBERS);
+	}
+
+	@Benchmark
+	public MappingBlob renameToIntermediary() {
+		return officialYarn.rename(intermediaries);
+	}
+
+	@Benchmark
+	public MappingBlob renameToOfficial() {
+		return yarn.rename(inversion);
+	}
+
+	@Benchmark
+	public MappingSplat splat() {
+		//The first invocation will fill in renamed's missing members, after which it doesn't change
+		return new MappingSplat(renamed, intermediaries);
+	}
+
+	@Benchmark
+	public void writeTiny() throws IOException {
+		try (TinyWriter writer = new TinyWriter(output, "official", "named", "intermediary")) {
+			for (CombinedMapping mapping : combined) {
+				String notch = mapping.from;
+				if (mapping.hasNameChange()) writer.acceptClass(notch, mapping.to, mapping.fallback);
+
+				for (CombinedMethod method : mapping.methodsWithNames()) {
+					writer.acceptMethod(notch, method.fromDesc, method.from, method.to, method.fallback);
+				}
+
+				for (CombinedField field : mapping.fieldsWithNames()) {
+					writer.acceptField(notch, field.fromDesc, field.from, field.to, field.fallback);
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void writeComments() throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(output)) {
+			TinyV2toV1.writeComments(writer, combined);
+		}
+	}
+
+	@Benchmark
+	public void convertV2toV1() {
+		TinyV2toV1.convert(yarnV2, output);
+	}
+}
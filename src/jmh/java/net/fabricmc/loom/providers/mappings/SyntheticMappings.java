@@ -0,0 +1,236 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.providers.mappings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+
+/** Deterministically generates a Minecraft-like set of mappings so the benchmarks can run without downloading anything */
+final class SyntheticMappings {
+	private static final String[] PRIMITIVES = {"I", "J", "Z", "F", "D", "B", "S", "C"};
+	private final int classCount;
+	private final String[] officialNames, intermediaryNames, namedNames;
+	private final String[][] fieldDescs, methodDescs;
+	private final int[] fieldStarts, methodStarts;
+
+	SyntheticMappings(int classCount, int fieldsPerClass, int methodsPerClass, long seed) {
+		Random random = new Random(seed);
+		this.classCount = classCount;
+
+		officialNames = new String[classCount];
+		intermediaryNames = new String[classCount];
+		namedNames = new String[classCount];
+		for (int i = 0; i < classCount; i++) {
+			officialNames[i] = obfName(i);
+			intermediaryNames[i] = "net/minecraft/class_" + i;
+			namedNames[i] = "net/minecraft/package" + i % 32 + "/Named" + i;
+		}
+
+		fieldDescs = new String[classCount][];
+		methodDescs = new String[classCount][];
+		fieldStarts = new int[classCount];
+		methodStarts = new int[classCount];
+		for (int i = 0, fields = 0, methods = 0; i < classCount; i++) {
+			fieldStarts[i] = fields;
+			fieldDescs[i] = new String[1 + random.nextInt(fieldsPerClass * 2)];
+			for (int field = 0; field < fieldDescs[i].length; field++, fields++) {
+				fieldDescs[i][field] = randomType(random);
+			}
+
+			methodStarts[i] = methods;
+			methodDescs[i] = new String[1 + random.nextInt(methodsPerClass * 2)];
+			for (int method = 0; method < methodDescs[i].length; method++, methods++) {
+				StringBuilder desc = new StringBuilder("(");
+				for (int arg = random.nextInt(4); arg > 0; arg--) desc.append(randomType(random));
+				methodDescs[i][method] = desc.append(')').append(random.nextInt(3) == 0 ? "V" : randomType(random)).toString();
+			}
+		}
+	}
+
+	private static String obfName(int index) {
+		StringBuilder name = new StringBuilder();
+
+		do {
+			name.append((char) ('a' + index % 26));
+			index /= 26;
+		} while (index-- > 0);
+
+		return name.reverse().toString();
+	}
+
+	/** Types are generated in official names, using the class index as a placeholder */
+	private String randomType(Random random) {
+		switch (random.nextInt(4)) {
+		case 0:
+			return PRIMITIVES[random.nextInt(PRIMITIVES.length)];
+
+		case 1:
+			return random.nextBoolean() ? "Ljava/lang/String;" : "[Ljava/lang/Object;";
+
+		default:
+			return (random.nextInt(5) == 0 ? "[L" : "L") + '\0' + random.nextInt(classCount) + ';';
+		}
+	}
+
+	private static String desc(String desc, String[] names) {
+		StringBuilder out = new StringBuilder(desc.length() + 32);
+
+		for (int i = 0, end = desc.length(); i < end; i++) {
+			char c = desc.charAt(i);
+
+			if (c == '\0') {
+				int nameEnd = desc.indexOf(';', i);
+				out.append(names[Integer.parseInt(desc.substring(i + 1, nameEnd))]);
+				i = nameEnd - 1;
+			} else {
+				out.append(c);
+			}
+		}
+
+		return out.toString();
+	}
+
+	private static int countArgs(String desc) {
+		int args = 0;
+
+		for (int i = 1; desc.charAt(i) != ')'; i++) {
+			char c = desc.charAt(i);
+
+			if (c == 'L') {
+				i = desc.indexOf(';', i);
+			} else if (c == '[') {
+				continue;
+			}
+
+			args++;
+		}
+
+		return args;
+	}
+
+	private void writeV1(Writer out, String[]... classNames) throws IOException {
+		for (int i = 0; i < classCount; i++) {
+			out.write("CLASS");
+			for (String[] names : classNames) {
+				out.write('\t');
+				out.write(names[i]);
+			}
+			out.write('\n');
+
+			for (int field = 0; field < fieldDescs[i].length; field++) {
+				out.write("FIELD\t" + classNames[0][i] + '\t' + desc(fieldDescs[i][field], classNames[0]) + '\t' + obfName(field) + "\tfield_" + (fieldStarts[i] + field));
+				if (classNames.length > 2) out.write("\tnamedField" + field);
+				out.write('\n');
+			}
+
+			for (int method = 0; method < methodDescs[i].length; method++) {
+				out.write("METHOD\t" + classNames[0][i] + '\t' + desc(methodDescs[i][method], classNames[0]) + '\t' + obfName(method) + "\tmethod_" + (methodStarts[i] + method));
+				if (classNames.length > 2) out.write("\tnamedMethod" + method);
+				out.write('\n');
+			}
+		}
+	}
+
+	/** Writes a tiny v1 file with official, intermediary and named columns */
+	void writeFullV1(Path file) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file)) {
+			out.write("v1\tofficial\tintermediary\tnamed\n");
+			writeV1(out, officialNames, intermediaryNames, namedNames);
+		}
+	}
+
+	/** Writes a tiny v1 file with official and intermediary columns, like the Intermediary releases */
+	void writeIntermediaryV1(Path file) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file)) {
+			out.write("v1\tofficial\tintermediary\n");
+			writeV1(out, officialNames, intermediaryNames);
+		}
+	}
+
+	/** Writes a tiny v2 file with intermediary and named columns along with comments and parameter names, like Yarn's releases */
+	void writeYarnV2(Path file) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file)) {
+			out.write("tiny\t2\t0\tintermediary\tnamed\n");
+
+			for (int i = 0; i < classCount; i++) {
+				out.write("c\t" + intermediaryNames[i] + '\t' + namedNames[i] + '\n');
+				if (i % 3 == 0) out.write("\tc\tThe class comment for " + namedNames[i] + '\n');
+
+				for (int field = 0; field < fieldDescs[i].length; field++) {
+					out.write("\tf\t" + desc(fieldDescs[i][field], intermediaryNames) + "\tfield_" + (fieldStarts[i] + field) + "\tnamedField" + field + '\n');
+					if (field % 4 == 0) out.write("\t\tc\tThe field comment\n");
+				}
+
+				for (int method = 0; method < methodDescs[i].length; method++) {
+					String desc = desc(methodDescs[i][method], intermediaryNames);
+					out.write("\tm\t" + desc + "\tmethod_" + (methodStarts[i] + method) + "\tnamedMethod" + method + '\n');
+					if (method % 3 == 0) out.write("\t\tc\tThe method comment\n");
+
+					for (int arg = 1, args = countArgs(desc); arg <= args; arg++) {
+						out.write("\t\tp\t" + arg + "\t\targ" + arg + '\n');
+					}
+				}
+			}
+		}
+	}
+
+	/** Writes a zip of enigma mapping files from intermediary to named, like Yarn's source tree */
+	void writeEnigma(Path zip) throws IOException {
+		Files.deleteIfExists(zip);
+
+		try (FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + zip.toUri()), Collections.singletonMap("create", "true"))) {
+			for (int i = 0; i < classCount; i++) {
+				Path file = fs.getPath("mappings", namedNames[i] + ".mapping");
+				Files.createDirectories(file.getParent());
+
+				try (BufferedWriter out = Files.newBufferedWriter(file)) {
+					out.write("CLASS " + intermediaryNames[i] + ' ' + namedNames[i] + '\n');
+					if (i % 3 == 0) out.write("\tCOMMENT The class comment\n");
+
+					for (int field = 0; field < fieldDescs[i].length; field++) {
+						out.write("\tFIELD field_" + (fieldStarts[i] + field) + " namedField" + field + ' ' + desc(fieldDescs[i][field], intermediaryNames) + '\n');
+					}
+
+					for (int method = 0; method < methodDescs[i].length; method++) {
+						String desc = desc(methodDescs[i][method], intermediaryNames);
+						out.write("\tMETHOD method_" + (methodStarts[i] + method) + " namedMethod" + method + ' ' + desc + '\n');
+
+						for (int arg = 1, args = countArgs(desc); arg <= args; arg++) {
+							out.write("\t\tARG " + arg + " arg" + arg + '\n');
+						}
+					}
+				}
+			}
+		}
+	}
+}
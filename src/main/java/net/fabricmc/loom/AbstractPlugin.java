@@ -67,6 +67,7 @@ import net.fabricmc.loom.task.RemapSourcesJarTask;
 import net.fabricmc.loom.util.AccessTransformerHelper;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.GroovyXmlUtil;
+import net.fabricmc.loom.util.MercuryCache;
 import net.fabricmc.loom.util.NestedJars;
 import net.fabricmc.loom.util.SetupIntelijRunConfigs;
 
@@ -94,6 +95,15 @@ public class AbstractPlugin implements Plugin<Project> {
 
 		LoomGradleExtension extension = project.getExtensions().create("minecraft", LoomGradleExtension.class, project);
 
+		//Registered before anything else which might remap sources once the project has been evaluated
+		project.afterEvaluate(p -> extension.getSrcMercuryCache().setMaxIdle(extension.sourceRemapperCacheSize));
+		//Report how well the source remappers were reused, then release them rather than holding onto them until the build is collected
+		project.getGradle().buildFinished(result -> {
+			MercuryCache cache = extension.getSrcMercuryCache();
+			project.getLogger().info(":releasing source remappers (" + cache.getStats() + ')');
+			cache.clear();
+		});
+
 		// Add default repositories
 		addDirectoryRepo(target, "UserCacheFiles", extension.getUserCache());
 		addDirectoryRepo(target, "UserLocalCacheFiles", extension.getRootProjectBuildCache());
@@ -33,22 +33,21 @@ import java.util.List;
 import java.util.Objects;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
-import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
 import com.google.gson.JsonObject;
-import org.cadixdev.lorenz.MappingSet;
-import org.cadixdev.mercury.Mercury;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.plugins.BasePluginConvention;
 
 import net.fabricmc.loom.dependencies.LoomDependencyManager;
+import net.fabricmc.loom.dependencies.RemappedModStore;
 import net.fabricmc.loom.providers.MappingsProvider;
 import net.fabricmc.loom.providers.MinecraftMappedProvider;
 import net.fabricmc.loom.providers.MinecraftProvider;
+import net.fabricmc.loom.util.MercuryCache;
 
 public class LoomGradleExtension {
 	public String runDir = "run";
@@ -59,6 +58,10 @@ public class LoomGradleExtension {
 	public boolean extractJars = false;
 	public String customManifest = null;
 	public String side = "both";
+	public int assetDownloadThreads = 10;
+	public int modRemapThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+	public int sourceRemapThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+	public int sourceRemapperCacheSize = Math.min(4, Runtime.getRuntime().availableProcessors());
 
 	private boolean bulldozeMappings;
 	private File atFile;
@@ -69,15 +72,14 @@ public class LoomGradleExtension {
 	private final Project project;
 	private LoomDependencyManager dependencyManager;
 	private JsonObject installerJson;
-	private MappingSet[] srcMappingCache = new MappingSet[2];
-	private Mercury[] srcMercuryCache = new Mercury[2];
+	private final MercuryCache srcMercuryCache = new MercuryCache(sourceRemapperCacheSize);
 
-	public MappingSet getOrCreateSrcMappingCache(int id, Supplier<MappingSet> factory) {
-		return srcMappingCache[id] != null ? srcMappingCache[id] : (srcMappingCache[id] = factory.get());
-	}
-
-	public Mercury getOrCreateSrcMercuryCache(int id, Supplier<Mercury> factory) {
-		return srcMercuryCache[id] != null ? srcMercuryCache[id] : (srcMercuryCache[id] = factory.get());
+	/**
+	 * The idle source remappers kept between sources jars, which is emptied at the end of each build.
+	 * Its size is set from {@link #sourceRemapperCacheSize} once the project has been evaluated.
+	 */
+	public MercuryCache getSrcMercuryCache() {
+		return srcMercuryCache;
 	}
 
 	public LoomGradleExtension(Project project) {
@@ -150,6 +152,10 @@ public class LoomGradleExtension {
 		return remappedModCache;
 	}
 
+	public RemappedModStore getRemappedModStore() {
+		return new RemappedModStore(new File(getUserCache(), "remapped_mods"));
+	}
+
 	public File getNestedModCache() {
 		File nestedModCache = new File(getRootProjectPersistentCache(), "nested_mods");
 
@@ -27,6 +27,8 @@ package net.fabricmc.loom.dependencies;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import com.google.gson.JsonObject;
 
@@ -95,40 +97,9 @@ public class LoomDependencyManager {
 		DependencyGraph graph = new DependencyGraph(dependencyProviderList);
 		List<Runnable> afterTasks = new ArrayList<>();
 
+		//Providers add dependencies and resolve configurations as they go, which has to be done on the configuring thread
 		for (DependencyProvider provider : graph.asIterable()) {
-			if (provider instanceof PhysicalDependencyProvider) {
-				PhysicalDependencyProvider physicalProvider = (PhysicalDependencyProvider) provider;
-
-				Configuration configuration = project.getConfigurations().getByName(physicalProvider.getTargetConfig());
-				DependencySet dependencies = configuration.getDependencies();
-
-				if (physicalProvider.isRequired() && dependencies.size() < 1) {
-					throw new InvalidUserDataException("Missing dependency for " + configuration.getName() + " configuration");
-				}
-
-				if (physicalProvider.isUnique() && dependencies.size() > 1) {
-					throw new InvalidUserDataException("Duplicate dependencies for " + configuration.getName() + " configuration");
-				}
-
-				for (Dependency dependency : dependencies) {
-					DependencyInfo info = DependencyInfo.create(project, dependency, configuration);
-
-					try {
-						physicalProvider.provide(info, project, extension, afterTasks::add);
-					} catch (Exception e) {
-						throw new RuntimeException("Failed to provide " + dependency.getGroup() + ':' + dependency.getName() + ':' + dependency.getVersion(), e);
-					}
-				}
-			} else if (provider instanceof LogicalDependencyProvider) {
-				try {
-					((LogicalDependencyProvider) provider).provide(project, extension, afterTasks::add);
-				} catch (Exception e) {
-					throw new RuntimeException("Failed to provide logical dependency of type " + provider.getClass(), e);
-				}
-			} else {
-				throw new IllegalStateException("Unexpected dependency provider type for " + provider + ": " + provider.getClass());
-			}
-
+			provide(provider, project, extension, afterTasks::add);
 			graph.markComplete(provider);
 		}
 
@@ -163,6 +134,45 @@ public class LoomDependencyManager {
 		}
 	}
 
+	private static void provide(DependencyProvider provider, Project project, LoomGradleExtension extension, Consumer<Runnable> postPopulationScheduler) {
+		long start = System.nanoTime();
+
+		if (provider instanceof PhysicalDependencyProvider) {
+			PhysicalDependencyProvider physicalProvider = (PhysicalDependencyProvider) provider;
+
+			Configuration configuration = project.getConfigurations().getByName(physicalProvider.getTargetConfig());
+			DependencySet dependencies = configuration.getDependencies();
+
+			if (physicalProvider.isRequired() && dependencies.size() < 1) {
+				throw new InvalidUserDataException("Missing dependency for " + configuration.getName() + " configuration");
+			}
+
+			if (physicalProvider.isUnique() && dependencies.size() > 1) {
+				throw new InvalidUserDataException("Duplicate dependencies for " + configuration.getName() + " configuration");
+			}
+
+			for (Dependency dependency : dependencies) {
+				DependencyInfo info = DependencyInfo.create(project, dependency, configuration);
+
+				try {
+					physicalProvider.provide(info, project, extension, postPopulationScheduler);
+				} catch (Exception e) {
+					throw new RuntimeException("Failed to provide " + dependency.getGroup() + ':' + dependency.getName() + ':' + dependency.getVersion(), e);
+				}
+			}
+		} else if (provider instanceof LogicalDependencyProvider) {
+			try {
+				((LogicalDependencyProvider) provider).provide(project, extension, postPopulationScheduler);
+			} catch (Exception e) {
+				throw new RuntimeException("Failed to provide logical dependency of type " + provider.getClass(), e);
+			}
+		} else {
+			throw new IllegalStateException("Unexpected dependency provider type for " + provider + ": " + provider.getClass());
+		}
+
+		project.getLogger().info(":provided " + provider.getClass().getSimpleName() + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+	}
+
 	private static void handleInstallerJson(JsonObject jsonObject, Project project) {
 		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 
@@ -31,12 +31,20 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 
-import com.google.common.base.Predicates;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -56,28 +64,127 @@ import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.providers.MappingsProvider;
 import net.fabricmc.loom.providers.MinecraftMappedProvider;
 import net.fabricmc.loom.util.AccessTransformerHelper;
+import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.loom.util.ClassPathSnapshot;
 import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.DaemonThreadFactory;
 import net.fabricmc.loom.util.TinyRemapperMappingsHelper;
 import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
 public class ModProcessor {
 	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+	/** Roughly how much heap each concurrent remapper needs for Minecraft and its libraries */
+	private static final long REMAPPER_HEAP = 512L * 1024 * 1024;
+
+	/** A mod jar to be remapped, along with where it should go and what it came with */
+	public static final class Mod {
+		public final File input, output;
+		public final Configuration config;
+		public final Optional<File> sources;
+
+		public Mod(File input, File output, Configuration config, Optional<File> sources) {
+			this.input = input;
+			this.output = output;
+			this.config = config;
+			this.sources = sources;
+		}
+	}
 
 	public static void processMod(File input, File output, Project project, Configuration config, Optional<File> sources) throws IOException {
-		if (output.exists()) {
-			output.delete();
-		}
+		processMods(project, Collections.singletonList(new Mod(input, output, config, sources)));
+	}
+
+	public static void processMods(Project project, List<Mod> mods) throws IOException {
+		if (mods.isEmpty()) return;
+
+		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
+		MappingsProvider mappingsProvider = extension.getMappingsProvider();
+		RemappedModStore store = extension.getRemappedModStore();
 
-		remapJar(input, output, project, sources);
+		//Resolving configurations isn't thread safe, so the class path is worked out up front
+		Path[] classPath = getModCompiles(project);
+		MinecraftMappedProvider mappedProvider = extension.getMinecraftMappedProvider();
+		Path[] mcClassPath = ClassPathSnapshot.of(project, Stream.concat(Stream.of(mappedProvider.MINECRAFT_INTERMEDIARY_JAR),
+				mappedProvider.getMapperPaths().stream()).map(File::toPath).toArray(Path[]::new));
+		String mappingsHash = Checksum.sha256(mappingsProvider.MAPPINGS_TINY);
+
+		//Each remapper holds the whole class path in memory, so the heap limits how many can run at once as much as the cores
+		int threads = (int) Math.min(Math.min(extension.modRemapThreads, mods.size()), Runtime.getRuntime().maxMemory() / REMAPPER_HEAP);
+
+		if (threads <= 1) {
+			for (Mod mod : mods) {
+				remapMod(project, extension, store, mappingsProvider, mappingsHash, classPath, mcClassPath, mod);
+			}
+		} else {
+			project.getLogger().info("Remapping " + mods.size() + " mods across " + threads + " threads");
+
+			ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("Loom Mod Remapper"));
+			try {
+				List<Future<?>> tasks = new ArrayList<>(mods.size());
+				for (Mod mod : mods) {
+					tasks.add(executor.submit(() -> {
+						remapMod(project, extension, store, mappingsProvider, mappingsHash, classPath, mcClassPath, mod);
+						return null;
+					}));
+				}
+
+				IOException failure = null;
+				for (Future<?> task : tasks) {
+					try {
+						task.get();
+					} catch (ExecutionException e) {
+						IOException cause = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+
+						if (failure == null) {
+							failure = cause;
+						} else {
+							failure.addSuppressed(cause);
+						}
+					}
+				}
+
+				if (failure != null) throw failure;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted whilst remapping mods", e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
 
 		//Enable this if you want your nested jars to be extracted, this will extract **all** jars
-		if (project.getExtensions().getByType(LoomGradleExtension.class).extractJars) {
-			handleNestedJars(input, project, config);
+		if (extension.extractJars) {
+			for (Mod mod : mods) {
+				handleNestedJars(mod.input, project, mod.config);
+			}
+		}
+	}
+
+	private static void remapMod(Project project, LoomGradleExtension extension, RemappedModStore store, MappingsProvider mappingsProvider, String mappingsHash, Path[] classPath, Path[] mcClassPath, Mod mod) throws IOException {
+		Path input = mod.input.toPath();
+		Path[] modCompiles = Arrays.stream(classPath).filter(path -> !path.equals(input)).toArray(Path[]::new);
+
+		//Everything which goes into remapping the mod, so any other project remapping it the same way can reuse the result
+		Object[] options = new Object[modCompiles.length + 5];
+		options[0] = "intermediary -> named";
+		options[1] = mappingsProvider.minecraftVersion;
+		options[2] = mappingsHash;
+		options[3] = extension.shouldBulldozeMappings();
+		options[4] = mod.sources.isPresent();
+		for (int i = 0; i < modCompiles.length; i++) {
+			options[i + 5] = Checksum.sha256(modCompiles[i].toFile());
 		}
+		Arrays.sort(options, 5, options.length); //The order the class path is given in doesn't matter
 
-		//Always strip the nested jars
-		stripNestedJars(output);
+		if (!store.provide(RemappedModStore.key(mod.input, options), mod.output, out -> {
+			remapJar(mod.input, out, project, modCompiles, mcClassPath, mod.sources);
+
+			//Always strip the nested jars
+			stripNestedJars(out);
+		})) {
+			project.getLogger().info("Reused remapped " + mod.input.getName() + " from the shared mod store");
+		}
 	}
 
 	private static void handleNestedJars(File input, Project project, Configuration config) throws IOException {
@@ -148,27 +255,20 @@ public class ModProcessor {
 		}));
 	}
 
-	private static void remapJar(File input, File output, Project project, Optional<File> sources) throws IOException {
+	private static Path[] getModCompiles(Project project) {
+		return Constants.MOD_COMPILE_ENTRIES.stream().map(RemappedConfigurationEntry::getSourceConfiguration).flatMap(sourceConfig -> {
+			return project.getConfigurations().getByName(sourceConfig).getFiles().stream().map(File::toPath);
+		}).distinct().toArray(Path[]::new);
+	}
+
+	private static void remapJar(File input, File output, Project project, Path[] modCompiles, Path[] mcClassPath, Optional<File> sources) throws IOException {
 		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 		String fromM = "intermediary";
 		String toM = "named";
 
-		MinecraftMappedProvider mappedProvider = extension.getMinecraftMappedProvider();
 		MappingsProvider mappingsProvider = extension.getMappingsProvider();
 
 		Path inputPath = input.getAbsoluteFile().toPath();
-		Path mc = mappedProvider.MINECRAFT_INTERMEDIARY_JAR.toPath();
-		Path[] mcDeps = mappedProvider.getMapperPaths().stream()
-			.map(File::toPath)
-			.toArray(Path[]::new);
-		Path[] modCompiles = Constants.MOD_COMPILE_ENTRIES.stream().map(RemappedConfigurationEntry::getSourceConfiguration).flatMap(sourceConfig -> {
-			return project.getConfigurations().getByName(sourceConfig).getFiles().stream()
-				.filter(Predicates.not(input::equals))
-				.map(file -> {
-					assert !file.equals(input); //Filter should have caught it
-					return file.toPath();
-				});
-		}).distinct().toArray(Path[]::new);
 
 		project.getLogger().lifecycle(":remapping " + input.getName() + " (TinyRemapper, " + fromM + " -> " + toM + ")");
 
@@ -186,8 +286,7 @@ public class ModProcessor {
 		try (OutputConsumerPath outputConsumer = new OutputConsumerPath(Paths.get(output.getAbsolutePath()))) {
 			outputConsumer.addNonClassFiles(inputPath, NonClassCopyMode.FIX_META_INF, null);
 			remapper.readClassPath(modCompiles);
-			remapper.readClassPath(mc);
-			remapper.readClassPath(mcDeps);
+			remapper.readClassPath(mcClassPath);
 			remapper.readInputs(inputPath);
 			remapper.apply(outputConsumer);
 		} finally {
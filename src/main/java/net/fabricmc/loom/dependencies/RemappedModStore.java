@@ -0,0 +1,175 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.dependencies;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+
+import net.fabricmc.loom.util.CacheEviction;
+import net.fabricmc.loom.util.Checksum;
+
+/**
+ * A machine wide store of remapped mod jars, addressed by the hash of everything which goes into remapping them.
+ * Any one mod remapped with any one set of mappings is thus only remapped once, regardless of which project asks for it.
+ *
+ * <p>Entries are published by atomically moving a complete jar into place, and producing one is guarded by a file lock
+ * so concurrent builds (whether in this or another Gradle daemon) wait for each other rather than repeat the work.
+ * Entries which haven't been used for a month are deleted the first time something new is stored in each daemon.
+ */
+public class RemappedModStore {
+	/** Bumped whenever the way mods are remapped changes enough to invalidate existing entries */
+	private static final int FORMAT = 1;
+	/** File locks are held per JVM, so threads within the same one have to be kept apart separately */
+	private static final Striped<Lock> LOCKS = Striped.lock(64);
+	/** How long an entry can go without being used before it is deleted */
+	private static final long MAX_UNUSED = TimeUnit.DAYS.toMillis(30);
+	/** The stores which have been pruned by this JVM, as it only needs doing once in a while */
+	private static final Set<Path> PRUNED = ConcurrentHashMap.newKeySet();
+
+	public interface Producer {
+		void produce(File output) throws IOException;
+	}
+
+	private final Path root;
+
+	public RemappedModStore(File root) {
+		this.root = root.toPath();
+	}
+
+	/**
+	 * Produce the key for the given input remapped with the given options.
+	 *
+	 * @param input The mod jar to be remapped
+	 * @param options Everything else which changes the remapped output, such as the mappings' hash and remapper flags
+	 * @return The hex key the remapped jar is stored under
+	 * @throws IOException If there is a problem reading the input
+	 */
+	public static String key(File input, Object... options) throws IOException {
+		Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putInt(FORMAT);
+		hasher.putString(Checksum.sha256(input), StandardCharsets.UTF_8);
+
+		for (Object option : options) {
+			hasher.putByte((byte) 0).putString(String.valueOf(option), StandardCharsets.UTF_8);
+		}
+
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * Copy the jar stored under the given key to the given destination, producing and storing it first if needed.
+	 *
+	 * @param key The key the jar is stored under, from {@link #key(File, Object...)}
+	 * @param destination Where the jar should be copied to
+	 * @param producer The means of producing the jar if it isn't already stored
+	 * @return Whether the jar had to be produced
+	 * @throws IOException If there is a problem producing or copying the jar
+	 */
+	public boolean provide(String key, File destination, Producer producer) throws IOException {
+		Path stored = root.resolve(key.substring(0, 2)).resolve(key + ".jar");
+
+		if (Files.exists(stored)) {
+			CacheEviction.markUsed(stored);
+			copy(stored, destination);
+			return false;
+		}
+
+		Files.createDirectories(stored.getParent());
+		Path lockFile = stored.resolveSibling(key + ".lock");
+		Lock lock = LOCKS.get(key);
+		lock.lock();
+
+		try {
+			try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock fileLock = channel.lock()) {
+				//Someone else might well have produced it whilst we were waiting
+				if (Files.exists(stored)) {
+					copy(stored, destination);
+					return false;
+				}
+
+				if (destination.exists()) destination.delete();
+				producer.produce(destination);
+
+				if (!destination.exists()) {
+					throw new IOException("Failed to produce " + destination);
+				}
+
+				Path temp = Files.createTempFile(stored.getParent(), key, ".part");
+				try {
+					Files.copy(destination.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+
+					try {
+						Files.move(temp, stored, StandardCopyOption.ATOMIC_MOVE);
+					} catch (AtomicMoveNotSupportedException e) {
+						Files.move(temp, stored, StandardCopyOption.REPLACE_EXISTING);
+					}
+				} finally {
+					Files.deleteIfExists(temp);
+				}
+			}
+
+			if (PRUNED.add(root)) prune();
+			return true;
+		} finally {
+			try {
+				//Anyone still waiting on the lock will find the entry once they have it, anyone later won't need the lock at all
+				Files.deleteIfExists(lockFile);
+			} catch (IOException e) {
+				//Someone else has it open, they can clean it up instead
+			}
+
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Delete the entries which haven't been used for a while, along with any lock files left behind by builds which were killed.
+	 */
+	private void prune() throws IOException {
+		CacheEviction.deleteUnused(root, ".jar", MAX_UNUSED);
+		CacheEviction.deleteUnused(root, ".lock", MAX_UNUSED);
+	}
+
+	private static void copy(Path stored, File destination) throws IOException {
+		Files.createDirectories(destination.getAbsoluteFile().getParentFile().toPath());
+		Files.copy(stored, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,347 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.providers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.fabricmc.mappings.ClassEntry;
+import net.fabricmc.mappings.EntryTriple;
+import net.fabricmc.mappings.FieldEntry;
+import net.fabricmc.mappings.Mappings;
+import net.fabricmc.mappings.MethodEntry;
+
+/**
+ * A {@link Mappings} backed by a binary copy of a tiny file, avoiding having to parse the text each time it is loaded.
+ *
+ * <p>The file is a header, then the string table offsets, then fixed width class/field/method records of string IDs (one per
+ * namespace for classes, three for members), then the UTF-8 string data. The namespaces are always the first strings in the table.
+ * The whole file is read onto the heap rather than memory mapped, so nothing keeps it open once it has been loaded. Strings, entries and
+ * member triples are only decoded as they are asked for, and then kept for next time.
+ */
+final class BinaryMappings implements Mappings {
+	private static final int MAGIC = 0x4C4D4150; //LMAP
+	private static final int VERSION = 1;
+	/** Magic, version, source size, source modification time, then the namespace, string, class, field and method counts */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 5 * 4;
+	private static final int NULL = -1;
+
+	private final ByteBuffer buffer;
+	private final List<String> namespaces;
+	private final String[] namespaceArray;
+	private final String[] strings;
+	private final int classCount, fieldCount, methodCount;
+	/** The entries which have been asked for, so each is only made once however many times the collections are walked */
+	private final ClassRecord[] classRecords;
+	private final MemberRecord[] fieldRecords, methodRecords;
+	private final int stringOffsets, classStart, fieldStart, methodStart, stringData;
+
+	private BinaryMappings(ByteBuffer buffer) {
+		this.buffer = buffer;
+
+		int namespaceCount = buffer.getInt(24);
+		strings = new String[buffer.getInt(28)];
+		classCount = buffer.getInt(32);
+		fieldCount = buffer.getInt(36);
+		methodCount = buffer.getInt(40);
+
+		stringOffsets = HEADER_SIZE;
+		classStart = stringOffsets + (strings.length + 1) * 4;
+		fieldStart = classStart + classCount * namespaceCount * 4;
+		methodStart = fieldStart + fieldCount * namespaceCount * 3 * 4;
+		stringData = methodStart + methodCount * namespaceCount * 3 * 4;
+
+		namespaceArray = new String[namespaceCount];
+		for (int i = 0; i < namespaceCount; i++) {
+			namespaceArray[i] = string(i);
+		}
+		namespaces = Collections.unmodifiableList(Arrays.asList(namespaceArray));
+
+		classRecords = new ClassRecord[classCount];
+		fieldRecords = new MemberRecord[fieldCount];
+		methodRecords = new MemberRecord[methodCount];
+	}
+
+	/** Opens the binary mappings at the given file, or returns {@code null} if it is missing or doesn't match the given source file */
+	static Mappings open(Path file, Path source) throws IOException {
+		if (Files.notExists(file) || Files.size(file) < HEADER_SIZE) return null;
+
+		//Read onto the heap rather than mapping the file, as Windows won't let a mapped file be deleted or replaced
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return null;
+		if (buffer.getLong(8) != Files.size(source) || buffer.getLong(16) != Files.getLastModifiedTime(source).toMillis()) return null;
+
+		return new BinaryMappings(buffer);
+	}
+
+	/** Writes the given mappings as binary mappings to the given file, stamping it with the details of the given source file */
+	static void write(Mappings mappings, Path file, Path source) throws IOException {
+		List<String> namespaces = new ArrayList<>(mappings.getNamespaces());
+		Map<String, Integer> stringIDs = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		namespaces.forEach(namespace -> intern(namespace, stringIDs, strings));
+
+		Collection<ClassEntry> classes = mappings.getClassEntries();
+		int[] classRecords = new int[classes.size() * namespaces.size()];
+		int index = 0;
+		for (ClassEntry entry : classes) {
+			for (String namespace : namespaces) {
+				classRecords[index++] = intern(entry.get(namespace), stringIDs, strings);
+			}
+		}
+
+		Collection<FieldEntry> fields = mappings.getFieldEntries();
+		int[] fieldRecords = new int[fields.size() * namespaces.size() * 3];
+		index = 0;
+		for (FieldEntry entry : fields) {
+			for (String namespace : namespaces) {
+				index = writeTriple(entry.get(namespace), fieldRecords, index, stringIDs, strings);
+			}
+		}
+
+		Collection<MethodEntry> methods = mappings.getMethodEntries();
+		int[] methodRecords = new int[methods.size() * namespaces.size() * 3];
+		index = 0;
+		for (MethodEntry entry : methods) {
+			for (String namespace : namespaces) {
+				index = writeTriple(entry.get(namespace), methodRecords, index, stringIDs, strings);
+			}
+		}
+
+		Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(Files.size(source));
+				out.writeLong(Files.getLastModifiedTime(source).toMillis());
+				out.writeInt(namespaces.size());
+				out.writeInt(strings.size());
+				out.writeInt(classes.size());
+				out.writeInt(fields.size());
+				out.writeInt(methods.size());
+
+				List<byte[]> data = new ArrayList<>(strings.size());
+				int offset = 0;
+				for (String string : strings) {
+					byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+					data.add(bytes);
+
+					out.writeInt(offset);
+					offset += bytes.length;
+				}
+				out.writeInt(offset);
+
+				for (int id : classRecords) out.writeInt(id);
+				for (int id : fieldRecords) out.writeInt(id);
+				for (int id : methodRecords) out.writeInt(id);
+				for (byte[] bytes : data) out.write(bytes);
+			}
+
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static int intern(String string, Map<String, Integer> stringIDs, List<String> strings) {
+		if (string == null) return NULL;
+
+		return stringIDs.computeIfAbsent(string, k -> {
+			strings.add(k);
+			return strings.size() - 1;
+		});
+	}
+
+	private static int writeTriple(EntryTriple triple, int[] records, int index, Map<String, Integer> stringIDs, List<String> strings) {
+		if (triple != null) {
+			records[index++] = intern(triple.getOwner(), stringIDs, strings);
+			records[index++] = intern(triple.getName(), stringIDs, strings);
+			records[index++] = intern(triple.getDesc(), stringIDs, strings);
+		} else {
+			records[index++] = NULL;
+			records[index++] = NULL;
+			records[index++] = NULL;
+		}
+
+		return index;
+	}
+
+	private String string(int id) {
+		if (id == NULL) return null;
+
+		String string = strings[id];
+		if (string == null) {
+			int start = buffer.getInt(stringOffsets + id * 4);
+			byte[] bytes = new byte[buffer.getInt(stringOffsets + (id + 1) * 4) - start];
+
+			ByteBuffer view = buffer.duplicate();
+			view.position(stringData + start);
+			view.get(bytes);
+
+			//Racing threads will at worst decode the same string twice
+			strings[id] = string = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		return string;
+	}
+
+	/** Find the index of the given namespace, checking by identity first as callers almost always pass the same few constants */
+	private int namespaceIndex(String namespace) {
+		for (int i = 0; i < namespaceArray.length; i++) {
+			if (namespaceArray[i] == namespace) return i;
+		}
+
+		for (int i = 0; i < namespaceArray.length; i++) {
+			if (namespaceArray[i].equals(namespace)) return i;
+		}
+
+		return -1;
+	}
+
+	private final class ClassRecord implements ClassEntry {
+		private final int recordStart;
+
+		ClassRecord(int recordStart) {
+			this.recordStart = recordStart;
+		}
+
+		@Override
+		public String get(String namespace) {
+			int index = namespaceIndex(namespace);
+			return index >= 0 ? string(buffer.getInt(recordStart + index * 4)) : null;
+		}
+	}
+
+	private final class MemberRecord implements FieldEntry, MethodEntry {
+		private final int recordStart;
+		/** The triple for each namespace, decoded the first time each is asked for */
+		private final EntryTriple[] triples = new EntryTriple[namespaceArray.length];
+
+		MemberRecord(int recordStart) {
+			this.recordStart = recordStart;
+		}
+
+		@Override
+		public EntryTriple get(String namespace) {
+			int index = namespaceIndex(namespace);
+			if (index < 0) return null;
+
+			EntryTriple triple = triples[index];
+			if (triple == null) {
+				int offset = recordStart + index * 3 * 4;
+				String owner = string(buffer.getInt(offset));
+				if (owner == null) return null;
+
+				//Racing threads will at worst decode the same triple twice
+				triples[index] = triple = new EntryTriple(owner, string(buffer.getInt(offset + 4)), string(buffer.getInt(offset + 8)));
+			}
+
+			return triple;
+		}
+	}
+
+	@Override
+	public Collection<String> getNamespaces() {
+		return namespaces;
+	}
+
+	@Override
+	public Collection<ClassEntry> getClassEntries() {
+		return new AbstractList<ClassEntry>() {
+			@Override
+			public ClassEntry get(int entry) {
+				if (entry < 0 || entry >= classCount) throw new IndexOutOfBoundsException("Index: " + entry + ", Size: " + classCount);
+
+				ClassRecord record = classRecords[entry];
+				if (record == null) classRecords[entry] = record = new ClassRecord(classStart + entry * namespaceArray.length * 4);
+				return record;
+			}
+
+			@Override
+			public int size() {
+				return classCount;
+			}
+		};
+	}
+
+	@Override
+	public Collection<FieldEntry> getFieldEntries() {
+		return new AbstractList<FieldEntry>() {
+			@Override
+			public FieldEntry get(int entry) {
+				if (entry < 0 || entry >= fieldCount) throw new IndexOutOfBoundsException("Index: " + entry + ", Size: " + fieldCount);
+
+				MemberRecord record = fieldRecords[entry];
+				if (record == null) fieldRecords[entry] = record = new MemberRecord(fieldStart + entry * namespaceArray.length * 3 * 4);
+				return record;
+			}
+
+			@Override
+			public int size() {
+				return fieldCount;
+			}
+		};
+	}
+
+	@Override
+	public Collection<MethodEntry> getMethodEntries() {
+		return new AbstractList<MethodEntry>() {
+			@Override
+			public MethodEntry get(int entry) {
+				if (entry < 0 || entry >= methodCount) throw new IndexOutOfBoundsException("Index: " + entry + ", Size: " + methodCount);
+
+				MemberRecord record = methodRecords[entry];
+				if (record == null) methodRecords[entry] = record = new MemberRecord(methodStart + entry * namespaceArray.length * 3 * 4);
+				return record;
+			}
+
+			@Override
+			public int size() {
+				return methodCount;
+			}
+		};
+	}
+}
@@ -26,6 +26,8 @@ package net.fabricmc.loom.providers;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -43,6 +45,7 @@ import net.fabricmc.loom.dependencies.ArtifactInfo;
 import net.fabricmc.loom.dependencies.DependencyProvider;
 import net.fabricmc.loom.dependencies.LogicalDependencyProvider;
 import net.fabricmc.loom.dependencies.ModProcessor;
+import net.fabricmc.loom.dependencies.ModProcessor.Mod;
 import net.fabricmc.loom.dependencies.RemappedConfigurationEntry;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.SourceRemapper;
@@ -60,13 +63,39 @@ public class MappedModsProvider extends LogicalDependencyProvider {
 
 		ConfigurationContainer configurations = project.getConfigurations();
 
+		List<Mod> toRemap = new ArrayList<>();
+		SourceRemapper sourceRemapper = new SourceRemapper(project, true);
 		for (RemappedConfigurationEntry entry : Constants.MOD_COMPILE_ENTRIES) {
 			remapDependencies(project, mappingsKey, extension.getRemappedModCache(), configurations.getByName(entry.getSourceConfiguration()),
-					configurations.getByName(entry.getRemappedConfiguration()), configurations.getByName(entry.getTargetConfiguration(configurations)), postPopulationScheduler);
+					configurations.getByName(entry.getRemappedConfiguration()), configurations.getByName(entry.getTargetConfiguration(configurations)), sourceRemapper, toRemap);
+		}
+
+		//Likewise the sources are all remapped together once everything else has been set up
+		postPopulationScheduler.accept(() -> {
+			try {
+				sourceRemapper.remapAll();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
+
+		//Remap everything which is out of date together, rather than one at a time as each is found
+		try {
+			ModProcessor.processMods(project, toRemap);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to remap mod", e);
+		}
+
+		for (Mod mod : toRemap) {
+			if (!mod.output.exists()) {
+				throw new RuntimeException("Failed to remap mod " + mod.input.getName());
+			}
+
+			mod.output.setLastModified(mod.input.lastModified());
 		}
 	}
 
-	public static void remapDependencies(Project project, String mappingsSuffix, File modStore, Configuration modCompile, Configuration modCompileRemapped, Configuration regularCompile, Consumer<Runnable> postPopulationScheduler) {
+	public static void remapDependencies(Project project, String mappingsSuffix, File modStore, Configuration modCompile, Configuration modCompileRemapped, Configuration regularCompile, SourceRemapper sourceRemapper, List<Mod> toRemap) {
 		Logger logger = project.getLogger();
 		DependencyHandler dependencies = project.getDependencies();
 
@@ -94,17 +123,7 @@ public class MappedModsProvider extends LogicalDependencyProvider {
 			File output = new File(modStore, remappedFilename + ".jar");
 			if (!output.exists() || input.lastModified() <= 0 || input.lastModified() > output.lastModified()) {
 				//If the output doesn't exist, or appears to be outdated compared to the input we'll remap it
-				try {
-					ModProcessor.processMod(input, output, project, modCompileRemapped, artifact.getSources());
-				} catch (IOException e) {
-					throw new RuntimeException("Failed to remap mod", e);
-				}
-
-				if (!output.exists()){
-					throw new RuntimeException("Failed to remap mod");
-				}
-
-				output.setLastModified(input.lastModified());
+				toRemap.add(new Mod(input, output, modCompileRemapped, artifact.getSources()));
 			} else {
 				logger.info(output.getName() + " is up to date with " + input.getName());
 			}
@@ -113,23 +132,15 @@ public class MappedModsProvider extends LogicalDependencyProvider {
 
 			Optional<File> sources = artifact.getSources();
 			if (sources.isPresent()) {
-				postPopulationScheduler.accept(() -> {
-					logger.lifecycle(":providing " + remappedLog + " sources");
-					File remappedSources = new File(modStore, remappedFilename + "-sources.jar");
-
-					if (!remappedSources.exists() || sources.get().lastModified() <= 0 || sources.get().lastModified() > remappedSources.lastModified()) {
-						try {
-							SourceRemapper.remapSources(project, sources.get(), remappedSources, true);
-
-							//Set the remapped sources creation date to match the sources if we're likely succeeded in making it
-							remappedSources.setLastModified(sources.get().lastModified());
-						} catch (Exception e) {
-							e.printStackTrace();
-						}
-					} else {
-						logger.info(remappedSources.getName() + " is up to date with " + sources.get().getName());
-					}
-				});
+				logger.lifecycle(":providing " + remappedLog + " sources");
+				File remappedSources = new File(modStore, remappedFilename + "-sources.jar");
+
+				if (!remappedSources.exists() || sources.get().lastModified() <= 0 || sources.get().lastModified() > remappedSources.lastModified()) {
+					//Set the remapped sources creation date to match the sources if we're likely succeeded in making it
+					sourceRemapper.scheduleRemapSources(sources.get(), remappedSources, () -> remappedSources.setLastModified(sources.get().lastModified()));
+				} else {
+					logger.info(remappedSources.getName() + " is up to date with " + sources.get().getName());
+				}
 			}
 		}
 	}
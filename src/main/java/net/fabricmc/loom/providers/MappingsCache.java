@@ -39,27 +39,56 @@ import net.fabricmc.mappings.MappingsProvider;
 public final class MappingsCache {
 	public static final MappingsCache INSTANCE = new MappingsCache();
 
-	private final Map<Path, SoftReference<Mappings>> mappingsCache = new HashMap<>();
+	private static class CachedMappings extends SoftReference<Mappings> {
+		final long size, lastModified;
+
+		CachedMappings(Mappings mappings, Path from) throws IOException {
+			super(mappings);
+
+			size = Files.size(from);
+			lastModified = Files.getLastModifiedTime(from).toMillis();
+		}
+
+		boolean isStale(Path from) throws IOException {
+			return size != Files.size(from) || lastModified != Files.getLastModifiedTime(from).toMillis();
+		}
+	}
+	private final Map<Path, CachedMappings> mappingsCache = new HashMap<>();
 
 	private MappingsCache() {
 	}
 
-	//TODO: loom doesn't actually use new mappings when the mappings change until the Gradle daemons are stopped
-    public Mappings get(Path mappingsPath) throws IOException {
+	/** The binary copy of the given mappings file which is kept alongside it, which is read in full rather than memory mapped so it can always be replaced */
+	public static Path getBinaryPath(Path mappingsPath) {
+		return mappingsPath.resolveSibling(mappingsPath.getFileName() + ".bin");
+	}
+
+	public synchronized Mappings get(Path mappingsPath) throws IOException {
 		mappingsPath = mappingsPath.toAbsolutePath();
 
-        SoftReference<Mappings> ref = !StaticPathWatcher.INSTANCE.hasFileChanged(mappingsPath) ? mappingsCache.get(mappingsPath) : null;
-        Mappings mappings = ref != null ? ref.get() : null;
+		CachedMappings ref = !StaticPathWatcher.INSTANCE.hasFileChanged(mappingsPath) ? mappingsCache.get(mappingsPath) : null;
+		Mappings mappings = ref != null && !ref.isStale(mappingsPath) ? ref.get() : null;
+
+		if (mappings == null) {
+			Path binaryPath = getBinaryPath(mappingsPath);
+			mappings = BinaryMappings.open(binaryPath, mappingsPath);
 
-        if (mappings == null) {
-        	try (InputStream stream = Files.newInputStream(mappingsPath)) {
-                mappings = MappingsProvider.readTinyMappings(stream, false);
-                mappingsCache.put(mappingsPath, new SoftReference<>(mappings));
-            }
+			if (mappings == null) {
+				try (InputStream stream = Files.newInputStream(mappingsPath)) {
+					mappings = MappingsProvider.readTinyMappings(stream, false);
+				}
 
-        	StaticPathWatcher.INSTANCE.resetFile(mappingsPath);
-        }
+				try {
+					BinaryMappings.write(mappings, binaryPath, mappingsPath);
+				} catch (IOException e) {
+					//Not the end of the world, the text file will just have to be read again next time
+				}
+			}
 
-        return mappings;
-    }
+			mappingsCache.put(mappingsPath, new CachedMappings(mappings, mappingsPath));
+			StaticPathWatcher.INSTANCE.resetFile(mappingsPath);
+		}
+
+		return mappings;
+	}
 }
@@ -766,11 +766,12 @@ public class MappingsProvider extends LogicalDependencyProvider {
 		MAPPINGS_TINY.delete();
 		MAPPINGS_TINY_BASE.delete();
 		intermediaryNames.delete();
-		try {
-			Files.deleteIfExists(parameterNames);
-			Files.deleteIfExists(decompileComments);
-		} catch (IOException e) {
-			e.printStackTrace(); //That's troublesome
+		for (Path file : new Path[] {parameterNames, decompileComments, MappingsCache.getBinaryPath(MAPPINGS_TINY.toPath())}) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				e.printStackTrace(); //That's troublesome
+			}
 		}
 	}
 }
@@ -27,13 +27,21 @@ package net.fabricmc.loom.providers;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.Gson;
 import org.gradle.api.GradleException;
@@ -42,10 +50,12 @@ import org.gradle.api.Project;
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.DaemonThreadFactory;
 import net.fabricmc.loom.util.DownloadUtil;
 import net.fabricmc.loom.util.MinecraftVersionInfo;
 import net.fabricmc.loom.util.assets.AssetIndex;
 import net.fabricmc.loom.util.assets.AssetObject;
+import net.fabricmc.loom.util.assets.VerifiedAssetIndex;
 import net.fabricmc.loom.util.progress.ProgressLogger;
 
 public class MinecraftAssetsProvider {
@@ -63,9 +73,11 @@ public class MinecraftAssetsProvider {
 			assets.mkdirs();
 		}
 
-		File assetsInfo = new File(assets, "indexes" + File.separator + assetIndex.getFabricId(minecraftProvider.minecraftVersion) + ".json");
+		VerifiedAssetIndex verified = VerifiedAssetIndex.load(new File(assets, "verified.index").toPath());
+		String assetsInfoKey = "indexes/" + assetIndex.getFabricId(minecraftProvider.minecraftVersion) + ".json";
+		File assetsInfo = new File(assets, assetsInfoKey);
 
-		if (!assetsInfo.exists() || !Checksum.equals(assetsInfo, assetIndex.sha1)) {
+		if (!assetsInfo.exists() || !isValid(verified, assetsInfoKey, assetsInfo, assetIndex.sha1)) {
 			project.getLogger().lifecycle(":downloading asset index");
 
 			if (offline) {
@@ -77,83 +89,120 @@ public class MinecraftAssetsProvider {
 					throw new GradleException("Asset index not found at " + assetsInfo.getAbsolutePath());
 				}
 			} else {
-				DownloadUtil.downloadIfChanged(new URL(assetIndex.url), assetsInfo, project.getLogger());
+				DownloadUtil.downloadIfChanged(new URL(assetIndex.url), assetsInfo, assetIndex.sha1, project.getLogger(), false);
 			}
 		}
 
 		project.getLogger().lifecycle(":downloading assets...");
 
-		Deque<ProgressLogger> loggers = new ConcurrentLinkedDeque<>();
-		ExecutorService executor = Executors.newFixedThreadPool(Math.min(10, Math.max(Runtime.getRuntime().availableProcessors() / 2, 1)));
-
 		AssetIndex index;
 
 		try (FileReader fileReader = new FileReader(assetsInfo)) {
 			index = new Gson().fromJson(fileReader, AssetIndex.class);
 		}
 
-		Map<String, AssetObject> parent = index.getFileMap();
+		//Hashing is bound by the disk and CPU, downloading by the network, so each gets its own pool to keep the other busy
+		ExecutorService verifier = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 1), new DaemonThreadFactory("Loom Asset Verifier"));
+		ExecutorService downloader = Executors.newFixedThreadPool(Math.max(extension.assetDownloadThreads, 1), new DaemonThreadFactory("Loom Asset Downloader"));
+		Deque<ProgressLogger> loggers = new ConcurrentLinkedDeque<>();
+
+		AtomicBoolean failed = new AtomicBoolean();
+		Map<String, Throwable> failures = new ConcurrentSkipListMap<>();
+		AtomicInteger downloaded = new AtomicInteger();
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
 
-		for (Map.Entry<String, AssetObject> entry : parent.entrySet()) {
+		for (Map.Entry<String, AssetObject> entry : index.getFileMap().entrySet()) {
+			String assetName = entry.getKey();
 			AssetObject object = entry.getValue();
 			String sha1 = object.getHash();
-			String filename = "objects" + File.separator + sha1.substring(0, 2) + File.separator + sha1;
-			File file = new File(assets, filename);
+			String key = "objects/" + sha1.substring(0, 2) + '/' + sha1;
+			File file = new File(assets, key);
+
+			tasks.add(CompletableFuture.supplyAsync(() -> {
+				//Once anything has failed there's no point checking anything else
+				return !failed.get() && (!file.exists() || file.length() != object.getSize() || !isValid(verified, key, file, sha1));
+			}, verifier).thenAcceptAsync(needsDownload -> {
+				if (!needsDownload || failed.get()) return;
 
-			if (!file.exists() || !Checksum.equals(file, sha1)) {
 				if (offline) {
 					if (file.exists()) {
-						project.getLogger().warn("Outdated asset " + entry.getKey());
+						project.getLogger().warn("Outdated asset " + assetName);
+						return;
 					} else {
-						throw new GradleException("Asset " + entry.getKey() + " not found at " + file.getAbsolutePath());
+						throw new GradleException("Asset " + assetName + " not found at " + file.getAbsolutePath());
 					}
-				} else {
-					executor.execute(() -> {
-						ProgressLogger progressLogger;
-
-						if (loggers.isEmpty()) {
-							//Create a new logger if we need one
-							progressLogger = ProgressLogger.getProgressFactory(project, MinecraftAssetsProvider.class.getName());
-							progressLogger.start("Downloading assets...", "assets");
-						} else {
-							// use a free logger if we can
-							progressLogger = loggers.pop();
-						}
-
-						String assetName = entry.getKey();
-						int end = assetName.lastIndexOf("/") + 1;
-
-						if (end > 0) {
-							assetName = assetName.substring(end);
-						}
-
-						project.getLogger().debug(":downloading asset " + assetName);
-						progressLogger.progress(String.format("%-30.30s", assetName) + " - " + sha1);
-
-						try {
-							DownloadUtil.downloadIfChanged(new URL(Constants.RESOURCES_BASE + sha1.substring(0, 2) + "/" + sha1), file, project.getLogger(), true);
-						} catch (IOException e) {
-							throw new RuntimeException("Failed to download: " + assetName, e);
-						}
-
-						//Give this logger back
-						loggers.add(progressLogger);
-					});
 				}
-			}
-		}
 
-		//Wait for the assets to all download
-		executor.shutdown();
+				ProgressLogger progressLogger = loggers.poll();
+				if (progressLogger == null) {
+					//Create a new logger if we need one
+					progressLogger = ProgressLogger.getProgressFactory(project, MinecraftAssetsProvider.class.getName());
+					progressLogger.start("Downloading assets...", "assets");
+				}
+
+				String shortName = assetName.substring(assetName.lastIndexOf('/') + 1);
+				project.getLogger().debug(":downloading asset " + shortName);
+				progressLogger.progress(String.format("%-30.30s", shortName) + " - " + sha1);
+
+				try {
+					//The contents are known to be wrong, so make sure not to ask the server whether it has been modified
+					DownloadUtil.delete(file);
+					DownloadUtil.downloadIfChanged(new URL(Constants.RESOURCES_BASE + sha1.substring(0, 2) + '/' + sha1), file, sha1, project.getLogger(), true);
+					verified.markVerified(key, file, sha1); //Hashed whilst downloading, so it's known to be right
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to download " + assetName, e);
+				} finally {
+					//Give this logger back
+					loggers.add(progressLogger);
+				}
+
+				downloaded.incrementAndGet();
+			}, downloader).whenComplete((ignored, t) -> {
+				if (t != null) {
+					failed.set(true);
+					failures.put(assetName, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+				}
+			}));
+		}
 
 		try {
-			if (executor.awaitTermination(2, TimeUnit.HOURS)) {
-				executor.shutdownNow();
+			CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+		} catch (CompletionException e) {
+			//Failures are collected and reported below
+		} finally {
+			verifier.shutdownNow();
+			downloader.shutdownNow();
+			loggers.forEach(ProgressLogger::completed);
+
+			try {
+				verified.save();
+			} catch (IOException e) {
+				project.getLogger().warn("Unable to save verified asset index", e);
 			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
 		}
 
-		loggers.forEach(ProgressLogger::completed);
+		if (!failures.isEmpty()) {
+			StringJoiner summary = new StringJoiner("\n\t", "Failed to download " + failures.size() + " asset(s):\n\t", "");
+			failures.forEach((asset, failure) -> summary.add(asset + ": " + failure.getMessage()));
+
+			GradleException exception = new GradleException(summary.toString(), failures.values().iterator().next());
+			failures.values().stream().skip(1).forEach(exception::addSuppressed);
+			throw exception;
+		}
+
+		if (downloaded.get() > 0) {
+			project.getLogger().info(":downloaded " + downloaded.get() + " assets");
+		}
+	}
+
+	private static boolean isValid(VerifiedAssetIndex verified, String key, File file, String sha1) {
+		if (verified.isVerified(key, file, sha1)) return true;
+
+		if (Checksum.equals(file, sha1)) {
+			verified.markVerified(key, file, sha1);
+			return true;
+		} else {
+			return false;
+		}
 	}
 }
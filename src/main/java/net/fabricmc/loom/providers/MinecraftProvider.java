@@ -228,14 +228,20 @@ public class MinecraftProvider extends PhysicalDependencyProvider {
 		if (!to.exists() || !Checksum.equals(to, hash) && StaticPathWatcher.INSTANCE.hasFileChanged(to.toPath())) {
 			logger.debug("Downloading Minecraft {} {} jar", minecraftVersion, name);
 
-			int attempt = 1;
-			do {
+			for (int attempt = 1;; attempt++) {
 				DownloadUtil.delete(to); //Clear the existing (wrong) contents out of the way
-				DownloadUtil.downloadIfChanged(from, to, logger);
-			} while (attempt++ <= DOWNLOAD_ATTEMPTS && !Checksum.equals(to, hash));
 
-			if (attempt > DOWNLOAD_ATTEMPTS) {//Apparently we just couldn't get a jar which had the right hash
-				throw new IllegalStateException("Unable to successfully download an intact " + minecraftVersion + ' ' + name + " jar!");
+				try {
+					//The hash is checked as the jar is downloaded, so there's no need to read it back again after
+					DownloadUtil.downloadIfChanged(from, to, hash, logger, false);
+					break;
+				} catch (IOException e) {
+					if (attempt >= DOWNLOAD_ATTEMPTS) {//Apparently we just couldn't get a jar which had the right hash
+						throw new IllegalStateException("Unable to successfully download an intact " + minecraftVersion + ' ' + name + " jar!", e);
+					}
+
+					logger.warn("Failed to download Minecraft {} {} jar (attempt {} of {}): {}", minecraftVersion, name, attempt, DOWNLOAD_ATTEMPTS, e.getMessage());
+				}
 			}
 
 			StaticPathWatcher.INSTANCE.resetFile(to.toPath());
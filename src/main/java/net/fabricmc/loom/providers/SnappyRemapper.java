@@ -27,6 +27,7 @@ import org.gradle.api.artifacts.Dependency;
 import com.google.common.net.UrlEscapers;
 
 import net.fabricmc.loom.LoomGradleExtension;
+import net.fabricmc.loom.util.ClassPathSnapshot;
 import net.fabricmc.loom.util.MinecraftVersionInfo;
 import net.fabricmc.stitch.util.Pair;
 import net.fabricmc.tinyremapper.OutputConsumerPath;
@@ -104,13 +105,20 @@ public class SnappyRemapper {
 
 		project.getLogger().lifecycle("Remapping minecraft (TinyRemapper, official -> intermediary)");
 
+		Path[] classPath;
+		try {
+			classPath = ClassPathSnapshot.of(project, libraries.stream().map(File::toPath).toArray(Path[]::new));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to snapshot Minecraft's libraries", e);
+		}
+
 		TinyRemapper remapper = TinyRemapper.newRemapper()
 				.withMappings(TinyUtils.createTinyMappingProvider(intermediaryMappings, "official", "intermediary"))
 				.build();
 
 		try (OutputConsumerPath outputConsumer = new OutputConsumerPath(remappedJar)) {
 			outputConsumer.addNonClassFiles(mergedJar);
-			remapper.readClassPath(libraries.stream().map(File::toPath).toArray(Path[]::new));
+			remapper.readClassPath(classPath);
 			remapper.readInputs(mergedJar);
 			remapper.apply(outputConsumer);
 		} catch (IOException e) {
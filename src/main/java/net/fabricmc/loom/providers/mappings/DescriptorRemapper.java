@@ -0,0 +1,84 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.providers.mappings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remaps the class names in field and method descriptors using a given class remapper, caching the results.
+ * As the cache is unsynchronised, instances should not be shared between threads.
+ */
+public final class DescriptorRemapper {
+	private final UnaryOperator<String> classRemapper;
+	private final Map<String, String> cache = new HashMap<>();
+
+	public DescriptorRemapper(UnaryOperator<String> classRemapper) {
+		this.classRemapper = classRemapper;
+	}
+
+	/** Remaps the given descriptor, returning the same instance if nothing changed */
+	public String remap(String desc) {
+		String remapped = cache.get(desc);
+
+		if (remapped == null) {
+			remapped = remapDesc(desc, classRemapper);
+			cache.put(desc, remapped);
+		}
+
+		return remapped;
+	}
+
+	/** Remaps the given descriptor without any caching, returning the same instance if nothing changed */
+	public static String remapDesc(String desc, UnaryOperator<String> classRemapper) {
+		StringBuilder out = null;
+		int copied = 0;
+
+		for (int i = 0, end = desc.length(); i < end; i++) {
+			if (desc.charAt(i) != 'L') continue;
+
+			int nameEnd = desc.indexOf(';', i + 1);
+			if (nameEnd < 0) break; //Not a complete class type, nothing more to remap
+
+			if (nameEnd > i + 1) {
+				String name = desc.substring(i + 1, nameEnd);
+				String remapped = classRemapper.apply(name);
+
+				if (!name.equals(remapped)) {
+					if (out == null) out = new StringBuilder(desc.length() + 16);
+
+					out.append(desc, copied, i + 1).append(remapped);
+					copied = nameEnd;
+				}
+			}
+
+			i = nameEnd;
+		}
+
+		if (out == null) return desc;
+		return out.append(desc, copied, desc.length()).toString();
+	}
+}
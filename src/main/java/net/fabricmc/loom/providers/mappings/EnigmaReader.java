@@ -26,6 +26,7 @@ package net.fabricmc.loom.providers.mappings;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
@@ -37,7 +38,7 @@ import java.util.stream.Stream;
 
 public class EnigmaReader {
 	public static void readEnigma(Path dir, IMappingAcceptor mappingAcceptor) throws IOException {
-		try (Stream<Path> stream = Files.find(FileSystems.newFileSystem(dir, null).getPath("/"),
+		try (FileSystem fs = FileSystems.newFileSystem(dir, null); Stream<Path> stream = Files.find(fs.getPath("/"),
 				Integer.MAX_VALUE,
 				(path, attr) -> attr.isRegularFile() && path.getFileName().toString().endsWith(".mapping"),
 				FileVisitOption.FOLLOW_LINKS)) {
@@ -12,6 +12,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -44,7 +45,8 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 
 			private Arg extendTo(int index) {
 				if (args.length <= index) {
-					Arg[] longerArgs = new Arg[index + 1];
+					//Grow geometrically rather than a slot at a time, trailing nulls are already expected
+					Arg[] longerArgs = new Arg[Math.max(index + 1, args.length << 1)];
 					System.arraycopy(args, 0, longerArgs, 0, args.length);
 					args = longerArgs;
 				}
@@ -182,11 +184,13 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		public final String from;
 		String to;
 		String comment;
-		final Map<String, Method> methods = new HashMap<>();
-		final Map<String, Field> fields = new HashMap<>();
+		final MemberTable<Method> methods = new MemberTable<>();
+		final MemberTable<Field> fields = new MemberTable<>();
+		private final StringPool pool;
 
-		public Mapping(String from) {
+		Mapping(String from, StringPool pool) {
 			this.from = from;
+			this.pool = pool;
 		}
 
 		public String to() {
@@ -201,12 +205,22 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 			return Optional.ofNullable(comment);
 		}
 
+		private long findKey(String name, String desc) {
+			int nameID = pool.find(name);
+			if (nameID < 0) return MemberTable.NO_KEY;
+
+			int descID = pool.find(desc);
+			if (descID < 0) return MemberTable.NO_KEY;
+
+			return MemberTable.key(nameID, descID);
+		}
+
 		public Iterable<Method> methods() {
-			return methods.values();
+			return methods;
 		}
 
 		public boolean hasMethod(Method other) {
-			return methods.containsKey(other.fromName + other.fromDesc);
+			return methods.get(findKey(other.fromName, other.fromDesc)) != null;
 		}
 
 		public Method method(Method other) {
@@ -214,15 +228,21 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		}
 
 		Method method(String srcName, String srcDesc) {
-			return methods.computeIfAbsent(srcName + srcDesc, k -> new Method(srcName, srcDesc));
+			int nameID = pool.intern(srcName);
+			int descID = pool.intern(srcDesc);
+			long key = MemberTable.key(nameID, descID);
+
+			Method method = methods.get(key);
+			if (method == null) methods.put(key, method = new Method(pool.get(nameID), pool.get(descID)));
+			return method;
 		}
 
 		public Iterable<Field> fields() {
-			return fields.values();
+			return fields;
 		}
 
 		public boolean hasField(Field other) {
-			return fields.containsKey(other.fromName + ";;" + other.fromDesc);
+			return fields.get(findKey(other.fromName, other.fromDesc)) != null;
 		}
 
 		public Field field(Field other) {
@@ -230,14 +250,127 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		}
 
 		Field field(String srcName, String srcDesc) {
-			return fields.computeIfAbsent(srcName + ";;" + srcDesc, k -> new Field(srcName, srcDesc));
+			int nameID = pool.intern(srcName);
+			int descID = pool.intern(srcDesc);
+			long key = MemberTable.key(nameID, descID);
+
+			Field field = fields.get(key);
+			if (field == null) fields.put(key, field = new Field(pool.get(nameID), pool.get(descID)));
+			return field;
 		}
 	}
 
+	/** Open addressed table of members keyed by their pooled name and descriptor IDs, iterating in insertion order */
+	static final class MemberTable<T> implements Iterable<T> {
+		static final long NO_KEY = -1L;
+		private long[] keys;
+		private Object[] values;
+		private int[] order; //Slots in insertion order
+		private int size;
+
+		static long key(int nameID, int descID) {
+			return (long) nameID << 32 | descID & 0xFFFFFFFFL;
+		}
+
+		private static int slot(long key, int mask) {
+			return (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+		}
+
+		@SuppressWarnings("unchecked")
+		T get(long key) {
+			if (size == 0 || key == NO_KEY) return null;
+			int mask = keys.length - 1;
+
+			for (int slot = slot(key, mask);; slot = slot + 1 & mask) {
+				long existing = keys[slot];
+
+				if (existing == key) {
+					return (T) values[slot];
+				} else if (existing == NO_KEY) {
+					return null;
+				}
+			}
+		}
+
+		void put(long key, T value) {
+			assert key != NO_KEY && get(key) == null;
+
+			if (keys == null) {
+				keys = new long[8];
+				Arrays.fill(keys, NO_KEY);
+				values = new Object[8];
+				order = new int[4];
+			} else if (size + 1 << 1 > keys.length) {
+				rehash();
+			}
+
+			int mask = keys.length - 1;
+			int slot = slot(key, mask);
+			while (keys[slot] != NO_KEY) slot = slot + 1 & mask;
+
+			keys[slot] = key;
+			values[slot] = value;
+			if (order.length == size) order = Arrays.copyOf(order, size << 1);
+			order[size++] = slot;
+		}
+
+		private void rehash() {
+			long[] oldKeys = keys;
+			Object[] oldValues = values;
+
+			keys = new long[oldKeys.length << 1];
+			Arrays.fill(keys, NO_KEY);
+			values = new Object[keys.length];
+			int mask = keys.length - 1;
+
+			for (int i = 0; i < size; i++) {
+				int oldSlot = order[i];
+
+				int slot = slot(oldKeys[oldSlot], mask);
+				while (keys[slot] != NO_KEY) slot = slot + 1 & mask;
+
+				keys[slot] = oldKeys[oldSlot];
+				values[slot] = oldValues[oldSlot];
+				order[i] = slot;
+			}
+		}
+
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				private int next;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public T next() {
+					if (!hasNext()) throw new NoSuchElementException();
+					return (T) values[order[next++]];
+				}
+			};
+		}
+	}
+
+	private final StringPool pool = new StringPool();
 	private final Map<String, Mapping> mappings = new HashMap<>();
 
 	public Mapping get(String srcName) {
-		return mappings.computeIfAbsent(srcName, Mapping::new);
+		Mapping mapping = mappings.get(srcName);
+
+		if (mapping == null) {
+			srcName = pool.canonicalise(srcName);
+			mappings.put(srcName, mapping = new Mapping(srcName, pool));
+		}
+
+		return mapping;
 	}
 
 	public String tryMapName(String srcName) {
@@ -247,7 +380,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 
 	@Override
 	public void acceptClass(String srcName, String dstName) {
-		get(srcName).to = dstName;
+		get(srcName).to = pool.canonicalise(dstName);
 	}
 
 	@Override
@@ -257,7 +390,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 
 	@Override
 	public void acceptMethod(String srcClsName, String srcName, String srcDesc, String dstClsName, String dstName, String dstDesc) {
-		get(srcClsName).method(srcName, srcDesc).setMapping(dstName, dstDesc);
+		get(srcClsName).method(srcName, srcDesc).setMapping(pool.canonicalise(dstName), pool.canonicalise(dstDesc));
 	}
 
 	@Override
@@ -277,7 +410,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 
 	@Override
 	public void acceptField(String srcClsName, String srcName, String srcDesc, String dstClsName, String dstName, String dstDesc) {
-		get(srcClsName).field(srcName, srcDesc).setMapping(dstName, dstDesc);
+		get(srcClsName).field(srcName, srcDesc).setMapping(pool.canonicalise(dstName), pool.canonicalise(dstDesc));
 	}
 
 	@Override
@@ -336,6 +469,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 			String mapping = tryMapName(name);
 			return mapping != null ? mapping : name;
 		};
+		DescriptorRemapper descRemapper = new DescriptorRemapper(classRemapper);
 
 		for (Mapping mapping : mappings.values()) {
 			if (mapping.to == null) {//If there is no mapped class name there is nothing for it to invert to
@@ -352,7 +486,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 					if (field.name() == null) continue;
 					//assert field.desc() != null: mapping.from + '#' + field.fromName + " (" + field.fromDesc + ") changes name without a changed descriptor";
 
-					String desc = MappingSplat.makeDesc(field, classRemapper);
+					String desc = MappingSplat.makeDesc(field, descRemapper);
 					invertion.acceptField(mapping.to, field.name(), desc, mapping.from, field.fromName, field.fromDesc);
 					invertion.acceptFieldComment(mapping.to, field.name(), desc, field.comment);
 				}
@@ -363,7 +497,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 					if (method.name() == null) continue;
 					//assert method.desc() != null: mapping.from + '#' + method.fromName + method.fromDesc + " changes name without a changed descriptor";
 
-					String desc = MappingSplat.makeDesc(method, classRemapper);
+					String desc = MappingSplat.makeDesc(method, descRemapper);
 					invertion.acceptMethod(mapping.to, method.name(), desc, mapping.from, method.fromName, method.fromDesc);
 					invertion.acceptMethodComment(mapping.to, method.name(), desc, method.comment);
 					if (doArgs) invertion.get(mapping.to).method(method.name(), desc).cloneArgs(method);
@@ -381,6 +515,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 			String mapping = blob.tryMapName(name);
 			return mapping != null ? mapping : name;
 		};
+		DescriptorRemapper descRemapper = new DescriptorRemapper(classRemapper);
 
 		for (Mapping mapping : mappings.values()) {
 			Mapping bridge = blob.mappings.get(mapping.from);
@@ -402,7 +537,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 					}
 				}
 
-				String desc = MappingSplat.remapDesc(field.fromDesc, classRemapper);
+				String desc = descRemapper.remap(field.fromDesc);
 				remap.acceptField(className, field.fromName, desc, mapping.to, field.name(), field.desc());
 				remap.acceptFieldComment(className, field.fromName, desc, field.comment);
 			}
@@ -420,7 +555,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 					}
 				}
 
-				String desc = MappingSplat.remapDesc(method.fromDesc, classRemapper);
+				String desc = descRemapper.remap(method.fromDesc);
 				remap.acceptMethod(className, method.fromName, desc, mapping.to, method.name(), method.desc());
 				remap.acceptMethodComment(className, method.fromName, desc, method.comment);
 				remap.get(className).method(method.fromName, desc).cloneArgs(method);
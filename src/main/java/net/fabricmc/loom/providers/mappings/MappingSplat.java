@@ -16,8 +16,6 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.StringJoiner;
 import java.util.function.UnaryOperator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -183,6 +181,8 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 			String triedMapping = mappings.tryMapName(className);
 			return triedMapping != null ? triedMapping : fallbackRemapper.apply(className);
 		};
+		DescriptorRemapper fallbackDescRemapper = new DescriptorRemapper(fallbackRemapper);
+		DescriptorRemapper descRemapper = new DescriptorRemapper(remapper);
 
 		//Fallback should cover all of mapping's class names, with the potential for more it doesn't have
 		for (Mapping mapping : fallback) {
@@ -208,8 +208,8 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 				} else {
 					name = otherMethod.nameOr(inter);
 				}
-				String interDesc = makeDesc(method, fallbackRemapper);
-				String nameDesc = makeDesc(otherMethod, remapper);
+				String interDesc = makeDesc(method, fallbackDescRemapper);
+				String nameDesc = makeDesc(otherMethod, descRemapper);
 				comment = (otherMethod.comment().isPresent() ? otherMethod : method).comment().orElse(null);
 
 				CombinedMethod combinedMethod = new CombinedMethod(notch, method.fromDesc, inter, interDesc, name, nameDesc, comment, otherMethod.extendArgs(method));
@@ -221,9 +221,9 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 				notch = field.fromName;
 
 				inter = field.nameOr(notch);
-				String interDesc = makeDesc(field, fallbackRemapper);
+				String interDesc = makeDesc(field, fallbackDescRemapper);
 				name = otherField.nameOr(inter);
-				String nameDesc = makeDesc(otherField, remapper);
+				String nameDesc = makeDesc(otherField, descRemapper);
 				comment = (otherField.comment().isPresent() ? otherField : field).comment().orElse(null);
 
 				CombinedField combinedField = new CombinedField(notch, field.fromDesc, inter, interDesc, name, nameDesc, comment);
@@ -257,8 +257,8 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 				}
 
 				if (method.comment().isPresent() || method.hasArgs()) {
-					String interDesc = remapDesc(method.fromDesc, fallbackRemapper);
-					String nameDesc = makeDesc(method, remapper);
+					String interDesc = fallbackDescRemapper.remap(method.fromDesc);
+					String nameDesc = makeDesc(method, descRemapper);
 					String comment = method.comment().orElse(null);
 
 					CombinedMethod bonusMethod = new CombinedMethod(notch, method.fromDesc, interDesc, nameDesc, comment, method.cloneArgs());
@@ -355,24 +355,15 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 		}
 	}
 
-	static String makeDesc(Field method, UnaryOperator<String> remapper) {
+	static String makeDesc(Field method, DescriptorRemapper remapper) {
 		if (method.desc() != null) {
 			return method.desc();
 		} else {
-			return remapDesc(method.fromDesc, remapper);
+			return remapper.remap(method.fromDesc);
 		}
 	}
 
-	private static final Pattern CLASS_FINDER = Pattern.compile("L([^;]+);");
 	public static String remapDesc(String desc, UnaryOperator<String> classRemapper) {
-		StringBuffer buf = new StringBuffer();
-
-		Matcher matcher = CLASS_FINDER.matcher(desc);
-		while (matcher.find()) {
-			matcher.appendReplacement(buf, Matcher.quoteReplacement('L' + classRemapper.apply(matcher.group(1)) + ';'));
-		}
-		matcher.appendTail(buf);
-
-		return buf.toString();
+		return DescriptorRemapper.remapDesc(desc, classRemapper);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.providers.mappings;
+
+import java.util.Arrays;
+
+/** An interning pool which hands out dense {@code int} IDs for strings, looking up an existing string never allocates */
+final class StringPool {
+	private String[] table = new String[1024];
+	private int[] tableIDs = new int[1024];
+	private String[] values = new String[512];
+	private int size;
+
+	private static int slot(String value, int mask) {
+		int hash = value.hashCode() * 0x9E3779B9;
+		return (hash ^ hash >>> 16) & mask;
+	}
+
+	/** Returns the ID for the given string, adding it to the pool if it isn't already */
+	public int intern(String value) {
+		int mask = table.length - 1;
+
+		for (int slot = slot(value, mask);; slot = slot + 1 & mask) {
+			String existing = table[slot];
+
+			if (existing == null) {
+				if (size == values.length) values = Arrays.copyOf(values, size << 1);
+				values[size] = value;
+
+				table[slot] = value;
+				tableIDs[slot] = size;
+
+				if (++size << 1 > table.length) rehash();
+				return size - 1;
+			} else if (existing.equals(value)) {
+				return tableIDs[slot];
+			}
+		}
+	}
+
+	/** Returns the ID for the given string, or {@code -1} if it is not in the pool */
+	public int find(String value) {
+		int mask = table.length - 1;
+
+		for (int slot = slot(value, mask);; slot = slot + 1 & mask) {
+			String existing = table[slot];
+
+			if (existing == null) {
+				return -1;
+			} else if (existing.equals(value)) {
+				return tableIDs[slot];
+			}
+		}
+	}
+
+	/** Returns the pooled instance of the given string, or {@code null} if given {@code null} */
+	public String canonicalise(String value) {
+		return value != null ? values[intern(value)] : null;
+	}
+
+	/** Returns the string for the given ID */
+	public String get(int id) {
+		if (id < 0 || id >= size) throw new IndexOutOfBoundsException("Unknown ID: " + id);
+
+		return values[id];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void rehash() {
+		String[] table = new String[this.table.length << 1];
+		int[] tableIDs = new int[table.length];
+		int mask = table.length - 1;
+
+		for (int id = 0; id < size; id++) {
+			String value = values[id];
+
+			int slot = slot(value, mask);
+			while (table[slot] != null) slot = slot + 1 & mask;
+
+			table[slot] = value;
+			tableIDs[slot] = id;
+		}
+
+		this.table = table;
+		this.tableIDs = tableIDs;
+	}
+}
@@ -102,6 +102,9 @@ public class TinyReader {
 	}
 
 	public static void readComments(Path file, String from, UnaryOperator<String> classRemapper, IMappingAcceptor mappingAcceptor) throws IOException {
+		//Without a class remapper descriptors are left as they are, just as they would be if the classes had no mappings
+		DescriptorRemapper descRemapper = new DescriptorRemapper(classRemapper != null ? classRemapper : UnaryOperator.identity());
+
 		try (Reader in = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
 			TinyV2Visitor.read(in, new MappingsVisitor() {
 				private int index;
@@ -134,7 +137,7 @@ public class TinyReader {
 						public MethodVisitor visitMethod(long offset, String[] names, String descriptor) {
 							return new MethodVisitor() {
 								private final String name = names[index];
-								private final String desc = index == 0 ? descriptor : MappingSplat.remapDesc(descriptor, classRemapper);
+								private final String desc = index == 0 ? descriptor : descRemapper.remap(descriptor);
 
 								@Override
 								public ParameterVisitor visitParameter(long offset, String[] names, int localVariableIndex) {
@@ -163,7 +166,7 @@ public class TinyReader {
 						public FieldVisitor visitField(long offset, String[] names, String descriptor) {
 							return new FieldVisitor() {
 								private final String name = names[index];
-								private final String desc = index == 0 ? descriptor : MappingSplat.remapDesc(descriptor, classRemapper);
+								private final String desc = index == 0 ? descriptor : descRemapper.remap(descriptor);
 
 								@Override
 								public void visitComment(String line) {
@@ -9,10 +9,8 @@ package net.fabricmc.loom.providers.openfine;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -38,9 +36,9 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 
+import net.fabricmc.loom.providers.MappingsCache;
 import net.fabricmc.mappings.EntryTriple;
 import net.fabricmc.mappings.FieldEntry;
-import net.fabricmc.mappings.MappingsProvider;
 import net.fabricmc.stitch.util.StitchUtil;
 import net.fabricmc.stitch.util.StitchUtil.FileSystemDelegate;
 
@@ -163,28 +161,26 @@ public class Openfine {
 	public static void applyBonusMappings(File to) throws IOException {
 		List<FieldEntry> extra = new ArrayList<>();
 
-		try (InputStream in = new FileInputStream(to)) {
-			for (FieldEntry field : MappingsProvider.readTinyMappings(in, false).getFieldEntries()) {
-				String interName = field.get("intermediary").getName();
+		for (FieldEntry field : MappingsCache.INSTANCE.get(to.toPath()).getFieldEntries()) {
+			String interName = field.get("intermediary").getName();
 
-				//Option#CLOUDS
-				if ("field_1937".equals(interName)) {
-					extra.add(namespace -> {
-						EntryTriple real = field.get(namespace);
-						return new EntryTriple(real.getOwner(), "official".equals(namespace) ? "CLOUDS" : "CLOUDS_OF", real.getDesc());
-					});
-				}
-
-				//WorldRenderer#renderDistance
-				if ("field_4062".equals(interName)) {
-					extra.add(namespace -> {
-						EntryTriple real = field.get(namespace);
-						return new EntryTriple(real.getOwner(), "official".equals(namespace) ? "renderDistance" : "renderDistance_OF", real.getDesc());
-					});
-				}
+			//Option#CLOUDS
+			if ("field_1937".equals(interName)) {
+				extra.add(namespace -> {
+					EntryTriple real = field.get(namespace);
+					return new EntryTriple(real.getOwner(), "official".equals(namespace) ? "CLOUDS" : "CLOUDS_OF", real.getDesc());
+				});
+			}
 
-				if (interName.endsWith("_OF")) return; //Already applied the bonus mappings to this file
+			//WorldRenderer#renderDistance
+			if ("field_4062".equals(interName)) {
+				extra.add(namespace -> {
+					EntryTriple real = field.get(namespace);
+					return new EntryTriple(real.getOwner(), "official".equals(namespace) ? "renderDistance" : "renderDistance_OF", real.getDesc());
+				});
 			}
+
+			if (interName.endsWith("_OF")) return; //Already applied the bonus mappings to this file
 		}
 
 		try (BufferedWriter writer = new BufferedWriter(new FileWriter(to, true))) {
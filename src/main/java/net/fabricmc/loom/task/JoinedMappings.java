@@ -0,0 +1,254 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.hash.Hashing;
+import org.cadixdev.lorenz.MappingSet;
+
+import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.mappings.ClassEntry;
+import net.fabricmc.mappings.EntryTriple;
+import net.fabricmc.mappings.FieldEntry;
+import net.fabricmc.mappings.Mappings;
+import net.fabricmc.mappings.MethodEntry;
+
+/**
+ * Say A is the source mappings and B is the target mappings.
+ * It does not map from intermediary to named but rather maps from named-A to named-B, by matching intermediary names.
+ * It goes through all of the intermediary names of A, and for every such intermediary name, call it I,
+ * matches the named mapping of I in A, with the named mapping of I in B.
+ * As you might imagine, this requires intermediary mappings to be stable across all versions.
+ * Since we only use intermediary names (and not descriptors) to match, and intermediary names are unique,
+ * this will migrate methods that have had their signature changed too.
+ *
+ * <p>The matched names are only kept as plain strings, so as many {@link MappingSet}s as are needed can be made from one join.
+ * This also lets the join be cached in a compact form, so migrating several projects to the same mappings only joins them once.
+ */
+class JoinedMappings {
+	private static final int MAGIC = 0x4A4F494E; //JOIN
+	private static final int FORMAT = 1;
+
+	/** Pairs of the named-A and named-B class names */
+	private final List<String[]> classes = new ArrayList<>();
+	/** The named-A owner, name and descriptor of each field or method, followed by the named-B name */
+	private final List<String[]> fields = new ArrayList<>(), methods = new ArrayList<>();
+
+	/**
+	 * Make the key the join of the given mappings files would be {@link #write(File) cached} under.
+	 *
+	 * @param sourceMappings The tiny file of the mappings being migrated from
+	 * @param targetMappings The jar of the mappings being migrated to
+	 */
+	static String key(File sourceMappings, File targetMappings, String fromNamespace, String toNamespace) throws IOException {
+		return Hashing.sha256().newHasher().putInt(FORMAT)
+				.putString(fromNamespace + '\0' + toNamespace, StandardCharsets.UTF_8)
+				.putString(Checksum.sha256(sourceMappings), StandardCharsets.UTF_8)
+				.putString(Checksum.sha256(targetMappings), StandardCharsets.UTF_8)
+				.hash().toString();
+	}
+
+	/**
+	 * Read a join which was previously {@link #write(File) written} to the given file.
+	 *
+	 * @return The join, or {@code null} if the file is missing or isn't a complete join
+	 */
+	static JoinedMappings read(File file) {
+		if (!file.exists()) return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT) return null;
+
+			JoinedMappings joined = new JoinedMappings();
+			readEntries(in, joined.classes, 2);
+			readEntries(in, joined.fields, 4);
+			readEntries(in, joined.methods, 4);
+			return joined;
+		} catch (IOException e) {
+			return null; //Something is wrong with the file, it's easier to join the mappings again
+		}
+	}
+
+	private static void readEntries(DataInput in, List<String[]> entries, int width) throws IOException {
+		for (int i = in.readInt(); i > 0; i--) {
+			String[] entry = new String[width];
+
+			for (int j = 0; j < width; j++) {
+				entry[j] = in.readUTF();
+			}
+
+			entries.add(entry);
+		}
+	}
+
+	/**
+	 * Save the join to the given file, so it can be {@link #read(File) read} back rather than joined again.
+	 */
+	void write(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		//Other projects in the same build might be migrating with the same mappings at the same time
+		Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT);
+				writeEntries(out, classes);
+				writeEntries(out, fields);
+				writeEntries(out, methods);
+			}
+
+			try {
+				Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void writeEntries(DataOutput out, List<String[]> entries) throws IOException {
+		out.writeInt(entries.size());
+
+		for (String[] entry : entries) {
+			for (String part : entry) {
+				out.writeUTF(part);
+			}
+		}
+	}
+
+	static JoinedMappings join(Mappings sourceMappings, Mappings targetMappings, String fromNamespace, String toNamespace) {
+		Map<String, ClassEntry> targetClasses = new HashMap<>();
+		for (ClassEntry entry : targetMappings.getClassEntries()) {
+			targetClasses.put(entry.get(fromNamespace), entry);
+		}
+
+		Map<EntryTriple, FieldEntry> targetFields = new HashMap<>();
+		for (FieldEntry entry : targetMappings.getFieldEntries()) {
+			targetFields.put(entry.get(fromNamespace), entry);
+		}
+
+		Map<EntryTriple, MethodEntry> targetMethods = new HashMap<>();
+		for (MethodEntry entry : targetMappings.getMethodEntries()) {
+			targetMethods.put(entry.get(fromNamespace), entry);
+		}
+
+		JoinedMappings joined = new JoinedMappings();
+
+		for (ClassEntry entry : sourceMappings.getClassEntries()) {
+			String from = entry.get(toNamespace);
+			String to = targetClasses.getOrDefault(entry.get(fromNamespace), entry).get(toNamespace);
+
+			joined.classes.add(new String[] {from, to});
+		}
+
+		for (FieldEntry entry : sourceMappings.getFieldEntries()) {
+			EntryTriple fromEntry = entry.get(toNamespace);
+			EntryTriple toEntry = targetFields.getOrDefault(entry.get(fromNamespace), entry).get(toNamespace);
+
+			joined.fields.add(new String[] {fromEntry.getOwner(), fromEntry.getName(), fromEntry.getDesc(), toEntry.getName()});
+		}
+
+		for (MethodEntry entry : sourceMappings.getMethodEntries()) {
+			EntryTriple fromEntry = entry.get(toNamespace);
+			EntryTriple toEntry = targetMethods.getOrDefault(entry.get(fromNamespace), entry).get(toNamespace);
+
+			joined.methods.add(new String[] {fromEntry.getOwner(), fromEntry.getName(), fromEntry.getDesc(), toEntry.getName()});
+		}
+
+		return joined;
+	}
+
+	/**
+	 * Make a new {@link MappingSet} of the joined mappings, which is needed for each thread remapping with them.
+	 */
+	MappingSet toMappingSet() {
+		MappingSet mappings = MappingSet.create();
+
+		for (String[] entry : classes) {
+			mappings.getOrCreateClassMapping(entry[0]).setDeobfuscatedName(entry[1]);
+		}
+
+		for (String[] entry : fields) {
+			mappings.getOrCreateClassMapping(entry[0]).getOrCreateFieldMapping(entry[1], entry[2]).setDeobfuscatedName(entry[3]);
+		}
+
+		for (String[] entry : methods) {
+			mappings.getOrCreateClassMapping(entry[0]).getOrCreateMethodMapping(entry[1], entry[2]).setDeobfuscatedName(entry[3]);
+		}
+
+		return mappings;
+	}
+
+	/**
+	 * Hash everything which is renamed by the simple name it is renamed from, as a source file can only be changed by a mapping
+	 * if it mentions the name being mapped.
+	 *
+	 * @return A hash of the mappings which change each name, for every name which is changed
+	 */
+	Map<String, Long> hashRenames() {
+		Map<String, Long> hashes = new HashMap<>();
+
+		for (String[] entry : classes) {
+			if (entry[0].equals(entry[1])) continue;
+
+			String name = entry[0].substring(Math.max(entry[0].lastIndexOf('/'), entry[0].lastIndexOf('$')) + 1);
+			hashes.merge(name, hash("class", entry), Long::sum);
+		}
+
+		for (String[] entry : fields) {
+			if (!entry[1].equals(entry[3])) hashes.merge(entry[1], hash("field", entry), Long::sum);
+		}
+
+		for (String[] entry : methods) {
+			if (!entry[1].equals(entry[3])) hashes.merge(entry[1], hash("method", entry), Long::sum);
+		}
+
+		return hashes;
+	}
+
+	private static long hash(String type, String[] entry) {
+		return Hashing.murmur3_128().newHasher().putString(type, StandardCharsets.UTF_8).putString(String.join("\0", entry), StandardCharsets.UTF_8).hash().asLong();
+	}
+}
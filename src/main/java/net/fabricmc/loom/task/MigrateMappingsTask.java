@@ -27,40 +27,59 @@ package net.fabricmc.loom.task;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
-import org.cadixdev.lorenz.MappingSet;
-import org.cadixdev.lorenz.io.MappingsReader;
 import org.cadixdev.mercury.Mercury;
 import org.cadixdev.mercury.remapper.MercuryRemapper;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.IllegalDependencyNotation;
 import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPluginConvention;
+import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
 
+import org.objectweb.asm.ClassReader;
+
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.providers.MappingsProvider;
 import net.fabricmc.loom.providers.MinecraftMappedProvider;
+import net.fabricmc.loom.util.CacheEviction;
+import net.fabricmc.loom.util.ClassPathSnapshot;
+import net.fabricmc.loom.util.DaemonThreadFactory;
+import net.fabricmc.loom.util.DeletingFileVisitor;
 import net.fabricmc.loom.util.SourceRemapper;
-import net.fabricmc.mappings.ClassEntry;
-import net.fabricmc.mappings.EntryTriple;
-import net.fabricmc.mappings.FieldEntry;
 import net.fabricmc.mappings.Mappings;
-import net.fabricmc.mappings.MethodEntry;
 
 public class MigrateMappingsTask extends AbstractLoomTask {
+	/** The fewest files worth giving a thread of their own, as each has to set up its own class path */
+	private static final int MIN_PARTITION = 250;
+	/** How many joins between different mappings are kept in the user cache */
+	private static final int MAX_CACHED_JOINS = 4;
+
 	private Path inputDir;
 	private Path outputDir;
 	private String mappings;
@@ -102,9 +121,29 @@ public class MigrateMappingsTask extends AbstractLoomTask {
 		MappingsProvider mappingsProvider = extension.getMappingsProvider();
 
 		try {
-			Mappings currentMappings = mappingsProvider.getMappings();
-			Mappings targetMappings = getMappings(mappings);
-			migrateMappings(project, extension.getMinecraftMappedProvider(), inputDir, outputDir, currentMappings, targetMappings);
+			File cache = new File(extension.getUserCache(), "migrate_mappings" + File.separator + JoinedMappings.key(mappingsProvider.MAPPINGS_TINY, mappings, "intermediary", "named") + ".bin");
+			JoinedMappings joined = JoinedMappings.read(cache);
+
+			if (joined == null) {
+				Mappings currentMappings = mappingsProvider.getMappings();
+				Mappings targetMappings = getMappings(mappings);
+
+				project.getLogger().lifecycle(":joining mappings");
+				joined = JoinedMappings.join(currentMappings, targetMappings, "intermediary", "named");
+
+				try {
+					joined.write(cache);
+					//Every pair of mappings migrated between makes a new join, only the most recent are likely to be wanted again
+					CacheEviction.keepRecent(cache.getParentFile().toPath(), ".bin", MAX_CACHED_JOINS);
+				} catch (IOException e) {
+					project.getLogger().warn("Unable to cache joined mappings, they will have to be joined again next time", e);
+				}
+			} else {
+				project.getLogger().info(":using joined mappings from " + cache.getName());
+				CacheEviction.markUsed(cache.toPath());
+			}
+
+			migrateMappings(project, extension, inputDir, outputDir, joined);
 			project.getLogger().lifecycle(":remapped project written to " + outputDir.toAbsolutePath());
 		} catch (IOException e) {
 			throw new IllegalArgumentException("Error while loading mappings", e);
@@ -146,83 +185,185 @@ public class MigrateMappingsTask extends AbstractLoomTask {
 		}
 	}
 
-	private static void migrateMappings(Project project, MinecraftMappedProvider minecraftMappedProvider,
-										Path inputDir, Path outputDir, Mappings currentMappings, Mappings targetMappings
-	) throws IOException {
-		project.getLogger().lifecycle(":joining mappings");
-		@SuppressWarnings("resource") //Hush, it doesn't need closing
-		MappingSet mappingSet = new MappingsJoiner(currentMappings, targetMappings, "intermediary", "named").read();
+	private void migrateMappings(Project project, LoomGradleExtension extension, Path inputDir, Path outputDir, JoinedMappings joined) throws IOException {
+		MinecraftMappedProvider minecraftMappedProvider = extension.getMinecraftMappedProvider();
+		List<Path> classPath = SourceRemapper.getClassPath(project, false);
+		classPath.add(minecraftMappedProvider.MINECRAFT_MAPPED_JAR.toPath());
+		classPath.add(minecraftMappedProvider.MINECRAFT_INTERMEDIARY_JAR.toPath());
+
+		//Remapping only some of the files together needs the rest of the project to be found from its compiled classes instead, if there are any
+		List<Path> compiledClasses = new ArrayList<>();
+		JavaPluginConvention javaModule = (JavaPluginConvention) project.getConvention().getPlugins().get("java");
+		for (File classes : javaModule.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getOutput().getClassesDirs()) {
+			if (classes.isDirectory()) compiledClasses.add(classes.toPath());
+		}
 
-		project.getLogger().lifecycle(":remapping");
-		Mercury mercury = SourceRemapper.createMercuryWithClassPath(project, false);
+		Hasher globalKey = Hashing.murmur3_128().newHasher();
+		for (Path entry : classPath) {
+			File file = entry.toFile();
+			globalKey.putString(file.getAbsolutePath(), StandardCharsets.UTF_8).putLong(file.length()).putLong(file.lastModified());
+		}
+		MigrationManifest manifest = MigrationManifest.read(outputDir, globalKey.hash().toString());
 
-		mercury.getClassPath().add(minecraftMappedProvider.MINECRAFT_MAPPED_JAR.toPath());
-		mercury.getClassPath().add(minecraftMappedProvider.MINECRAFT_INTERMEDIARY_JAR.toPath());
+		//What a file migrates to also depends on the types it uses from the rest of the project, which are found by name like the renames are
+		Map<String, Long> relevant = new HashMap<>(joined.hashRenames());
+		for (Path classes : compiledClasses) {
+			hashSignatures(classes, relevant);
+		}
+		Map<String, String> keys = new TreeMap<>();
+		Map<String, Long> changed = new HashMap<>();
 
-		mercury.getProcessors().add(MercuryRemapper.create(mappingSet));
+		try (Stream<Path> files = Files.walk(inputDir)) {
+			for (Path file : (Iterable<Path>) files.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(".java"))::iterator) {
+				String path = inputDir.relativize(file).toString().replace(File.separatorChar, '/');
+				byte[] contents = Files.readAllBytes(file);
 
-		try {
-			mercury.rewrite(inputDir, outputDir);
-		} catch (Exception e) {
-			project.getLogger().warn("Could not remap fully!", e);
+				String key = MigrationManifest.key(contents, relevant);
+				keys.put(path, key);
+
+				if (!manifest.isUpToDate(path, key) || !Files.exists(outputDir.resolve(path))) {
+					changed.put(path, (long) contents.length);
+				}
+			}
 		}
 
-		project.getLogger().lifecycle(":cleaning file descriptors");
-		System.gc();
-	}
+		for (String path : manifest.getFiles()) {
+			if (!keys.containsKey(path)) {
+				Files.deleteIfExists(outputDir.resolve(path)); //No longer in the input
+			}
+		}
+
+		if (changed.isEmpty()) {
+			project.getLogger().lifecycle(":remapped sources are up to date");
+			manifest.write(keys);
+			return;
+		}
 
-	private static class MappingsJoiner extends MappingsReader {
-		private final Mappings sourceMappings, targetMappings;
-		private final String fromNamespace, toNamespace;
-
-		/**
-		 * Say A is the source mappings and B is the target mappings.
-		 * It does not map from intermediary to named but rather maps from named-A to named-B, by matching intermediary names.
-		 * It goes through all of the intermediary names of A, and for every such intermediary name, call it I,
-		 * matches the named mapping of I in A, with the named mapping of I in B.
-		 * As you might imagine, this requires intermediary mappings to be stable across all versions.
-		 * Since we only use intermediary names (and not descriptors) to match, and intermediary names are unique,
-		 * this will migrate methods that have had their signature changed too.
-		 */
-		private MappingsJoiner(Mappings sourceMappings, Mappings targetMappings, String fromNamespace, String toNamespace) {
-			this.sourceMappings = sourceMappings;
-			this.targetMappings = targetMappings;
-			this.fromNamespace = fromNamespace;
-			this.toNamespace = toNamespace;
-		}
-
-		@Override
-		public MappingSet read(MappingSet mappings) {
-			Map<String, ClassEntry> targetClasses = targetMappings.getClassEntries().stream().collect(Collectors.toMap(mapping -> mapping.get(fromNamespace), Function.identity()));
-			Map<EntryTriple, FieldEntry> targetFields = targetMappings.getFieldEntries().stream().collect(Collectors.toMap(mapping -> mapping.get(fromNamespace), Function.identity()));
-			Map<EntryTriple, MethodEntry> targetMethods = targetMappings.getMethodEntries().stream().collect(Collectors.toMap(mapping -> mapping.get(fromNamespace), Function.identity()));
-
-			for (ClassEntry entry : sourceMappings.getClassEntries()) {
-				String from = entry.get(toNamespace);
-				String to = targetClasses.getOrDefault(entry.get(fromNamespace), entry).get(toNamespace);
-
-				mappings.getOrCreateClassMapping(from).setDeobfuscatedName(to);
+		int threads;
+		if (compiledClasses.isEmpty()) {
+			threads = 1;
+
+			for (String path : keys.keySet()) {
+				changed.putIfAbsent(path, 0L); //Without the classes, the only way to see the whole project is to remap all of it together
 			}
+		} else {
+			threads = SourceRemapper.getThreads(Math.min(extension.sourceRemapThreads, (changed.size() + MIN_PARTITION - 1) / MIN_PARTITION));
+		}
 
-			for (FieldEntry entry : sourceMappings.getFieldEntries()) {
-				EntryTriple fromEntry = entry.get(toNamespace);
-				EntryTriple toEntry = targetFields.getOrDefault(entry.get(fromNamespace), entry).get(toNamespace);
+		project.getLogger().lifecycle(":remapping " + changed.size() + " of " + keys.size() + " files" + (threads > 1 ? " across " + threads + " threads" : ""));
+		Set<String> failed = ConcurrentHashMap.newKeySet();
 
-				mappings.getOrCreateClassMapping(fromEntry.getOwner()).getOrCreateFieldMapping(fromEntry.getName(), fromEntry.getDesc()).setDeobfuscatedName(toEntry.getName());
+		if (threads == 1 && changed.size() == keys.size()) {
+			if (!rewrite(project, joined, classPath, inputDir, outputDir)) failed.addAll(changed.keySet());
+		} else {
+			List<Path> partitionClassPath = new ArrayList<>(classPath);
+			partitionClassPath.addAll(compiledClasses);
+
+			List<List<String>> partitions = partition(changed, threads);
+			ExecutorService executor = Executors.newFixedThreadPool(partitions.size(), new DaemonThreadFactory("Loom Mappings Migrator"));
+
+			try {
+				List<Future<?>> tasks = new ArrayList<>(partitions.size());
+
+				for (int i = 0; i < partitions.size(); i++) {
+					List<String> partition = partitions.get(i);
+					Path partitionDir = getTemporaryDir().toPath().resolve("partition-" + i);
+
+					tasks.add(executor.submit(() -> {
+						if (Files.exists(partitionDir)) Files.walkFileTree(partitionDir, new DeletingFileVisitor());
+
+						try {
+							for (String path : partition) {
+								Path link = partitionDir.resolve(path);
+								Files.createDirectories(link.getParent());
+
+								try {
+									Files.createLink(link, inputDir.resolve(path));
+								} catch (IOException | UnsupportedOperationException e) {
+									Files.copy(inputDir.resolve(path), link);
+								}
+							}
+
+							if (!rewrite(project, joined, partitionClassPath, partitionDir, outputDir)) failed.addAll(partition);
+						} finally {
+							Files.walkFileTree(partitionDir, new DeletingFileVisitor());
+						}
+
+						return null;
+					}));
+				}
+
+				for (Future<?> task : tasks) {
+					task.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted whilst remapping", e);
+			} catch (ExecutionException e) {
+				throw new IOException("Error remapping", e.getCause());
+			} finally {
+				executor.shutdownNow();
 			}
+		}
 
-			for (MethodEntry entry : sourceMappings.getMethodEntries()) {
-				EntryTriple fromEntry = entry.get(toNamespace);
-				EntryTriple toEntry = targetMethods.getOrDefault(entry.get(fromNamespace), entry).get(toNamespace);
+		//Anything which didn't remap properly is left out so it is tried again next time
+		keys.keySet().removeAll(failed);
+		manifest.write(keys);
+	}
 
-				mappings.getOrCreateClassMapping(fromEntry.getOwner()).getOrCreateMethodMapping(fromEntry.getName(), fromEntry.getDesc()).setDeobfuscatedName(toEntry.getName());
+	/**
+	 * Hash the member signatures of every class in the given directory by its simple name, ignoring method bodies.
+	 */
+	private static void hashSignatures(Path classesDir, Map<String, Long> hashes) throws IOException {
+		try (Stream<Path> files = Files.walk(classesDir)) {
+			for (Path file : (Iterable<Path>) files.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(".class"))::iterator) {
+				String fileName = file.getFileName().toString();
+				String name = fileName.substring(fileName.lastIndexOf('$') + 1, fileName.length() - 6);
+
+				long hash = Hashing.murmur3_128().newHasher().putString(classesDir.relativize(file).toString(), StandardCharsets.UTF_8)
+						.putBytes(ClassPathSnapshot.stripCode(new ClassReader(Files.readAllBytes(file)))).hash().asLong();
+				hashes.merge(name, hash, Long::sum);
 			}
+		}
+	}
+
+	/**
+	 * Split the given files into at most the given number of partitions of similar total size.
+	 */
+	private static List<List<String>> partition(Map<String, Long> files, int count) {
+		List<String> bySize = new ArrayList<>(files.keySet());
+		bySize.sort(Comparator.comparing(files::get, Comparator.reverseOrder()));
+
+		List<List<String>> partitions = new ArrayList<>(count);
+		long[] sizes = new long[count];
+		for (int i = 0; i < count; i++) partitions.add(new ArrayList<>());
+
+		for (String file : bySize) {
+			int smallest = 0;
 
-			return mappings;
+			for (int i = 1; i < count; i++) {
+				if (sizes[i] < sizes[smallest]) smallest = i;
+			}
+
+			partitions.get(smallest).add(file);
+			sizes[smallest] += files.get(file);
 		}
 
-		@Override
-		public void close() {
+		partitions.removeIf(List::isEmpty);
+		return partitions;
+	}
+
+	private static boolean rewrite(Project project, JoinedMappings joined, List<Path> classPath, Path inputDir, Path outputDir) {
+		Mercury mercury = new Mercury();
+		mercury.getClassPath().addAll(classPath);
+		mercury.getProcessors().add(MercuryRemapper.create(joined.toMappingSet()));
+
+		try {
+			mercury.rewrite(inputDir, outputDir);
+			return true;
+		} catch (Exception e) {
+			project.getLogger().warn("Could not remap fully!", e);
+			return false;
 		}
 	}
 }
@@ -0,0 +1,152 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Records what each source file looked like the last time it was migrated into an output directory, so it can be left alone next time if nothing
+ * which could change it has changed since.
+ *
+ * <p>A file's key covers its contents, the mappings for each name it mentions and the compiled signatures of each project type it mentions
+ * by name. Types only reached indirectly, such as through the supertypes of a mentioned type, aren't covered. The class path the files were
+ * remapped with is kept for the whole directory, as a change to it could change how any file is remapped.
+ */
+class MigrationManifest {
+	private static final String NAME = ".migrate-manifest";
+	private static final String HEADER = "loom-migrate-manifest\t1";
+
+	private final Path file;
+	private final String globalKey;
+	private final Map<String, String> previous;
+	/** Whether the previous keys were made with the same global key, otherwise only which files were migrated can be used */
+	private final boolean current;
+
+	private MigrationManifest(Path file, String globalKey, Map<String, String> previous, boolean current) {
+		this.file = file;
+		this.globalKey = globalKey;
+		this.previous = previous;
+		this.current = current;
+	}
+
+	static MigrationManifest read(Path outputDir, String globalKey) {
+		Path file = outputDir.resolve(NAME);
+		Map<String, String> previous = new HashMap<>();
+		boolean current = false;
+
+		if (Files.exists(file)) {
+			try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				if (HEADER.equals(reader.readLine())) {
+					//Even if the keys are no longer any use, the files are still needed to clean up the outputs of removed inputs
+					current = globalKey.equals(reader.readLine());
+
+					String line;
+					while ((line = reader.readLine()) != null) {
+						int split = line.lastIndexOf('\t');
+						if (split > 0) previous.put(line.substring(0, split), line.substring(split + 1));
+					}
+				}
+			} catch (IOException e) {
+				previous.clear(); //Something is wrong with the manifest, so everything will have to be migrated again
+				current = false;
+			}
+		}
+
+		return new MigrationManifest(file, globalKey, previous, current);
+	}
+
+	/**
+	 * Make the key for a source file with the given contents.
+	 *
+	 * @param contents The contents of the source file
+	 * @param renames The hash of whatever could change how each name is migrated, such as from {@link JoinedMappings#hashRenames()}
+	 */
+	static String key(byte[] contents, Map<String, Long> renames) {
+		String text = new String(contents, StandardCharsets.UTF_8);
+		Set<String> seen = new HashSet<>();
+		long relevant = 0; //Summed so the order the names are mentioned in doesn't matter
+
+		for (int i = 0; i < text.length();) {
+			if (!Character.isJavaIdentifierStart(text.charAt(i))) {
+				i++;
+				continue;
+			}
+
+			int start = i++;
+			while (i < text.length() && Character.isJavaIdentifierPart(text.charAt(i))) i++;
+
+			String name = text.substring(start, i);
+			Long hash = renames.get(name);
+			if (hash != null && seen.add(name)) relevant += hash;
+		}
+
+		return Hashing.murmur3_128().newHasher().putBytes(contents).putLong(relevant).hash().toString();
+	}
+
+	/** Whether the file at the given path was last migrated with the given key */
+	boolean isUpToDate(String path, String key) {
+		return current && key.equals(previous.get(path));
+	}
+
+	/** The path of every file which was migrated last time */
+	Set<String> getFiles() {
+		return Collections.unmodifiableSet(previous.keySet());
+	}
+
+	/**
+	 * Record the keys of the files which are now correctly migrated, replacing the previous manifest.
+	 */
+	void write(Map<String, String> keys) throws IOException {
+		Path temp = file.resolveSibling(NAME + ".tmp");
+
+		try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			writer.write(HEADER);
+			writer.newLine();
+			writer.write(globalKey);
+			writer.newLine();
+
+			for (Entry<String, String> entry : keys.entrySet()) {
+				writer.write(entry.getKey() + '\t' + entry.getValue());
+				writer.newLine();
+			}
+		}
+
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
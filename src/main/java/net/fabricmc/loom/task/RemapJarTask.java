@@ -27,10 +27,21 @@ package net.fabricmc.loom.task;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import net.fabricmc.tinyremapper.NonClassCopyMode;
 import org.gradle.api.Project;
@@ -44,9 +55,15 @@ import org.gradle.jvm.tasks.Jar;
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.providers.MappingsProvider;
 import net.fabricmc.loom.util.AccessTransformerHelper;
+import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.loom.util.ClassPathSnapshot;
+import net.fabricmc.loom.util.DeletingFileVisitor;
 import net.fabricmc.loom.util.GradleSupport;
+import net.fabricmc.loom.util.JarEntryProcessor;
 import net.fabricmc.loom.util.MixinRefmapHelper;
 import net.fabricmc.loom.util.NestedJars;
+import net.fabricmc.loom.util.RemapManifest;
+import net.fabricmc.loom.util.RemapManifest.EntryHash;
 import net.fabricmc.loom.util.TinyRemapperMappingsHelper;
 import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
@@ -56,6 +73,7 @@ public class RemapJarTask extends Jar {
 	private final RegularFileProperty input = GradleSupport.getFileProperty(getProject());
 	private boolean addNestedDependencies;
 	private boolean includeAT = true;
+	private boolean incremental = true;
 	private String fromMappings = "named";
 	private String toMappings = "intermediary";
 
@@ -64,11 +82,15 @@ public class RemapJarTask extends Jar {
 		Path input = getInput().getAsFile().get().toPath();
 		Path output = getArchivePath().toPath();
 
-		remap(this, input, output, addNestedDependencies, includeAT);
+		remap(this, input, output, addNestedDependencies, includeAT, incremental);
 		getProject().getExtensions().getByType(LoomGradleExtension.class).addUnmappedMod(input);
 	}
 
 	public static void remap(Task task, Path input, Path output, boolean addNestedDependencies, boolean skipATs) throws IOException {
+		remap(task, input, output, addNestedDependencies, skipATs, false);
+	}
+
+	public static void remap(Task task, Path input, Path output, boolean addNestedDependencies, boolean skipATs, boolean incremental) throws IOException {
 		if (!Files.exists(input)) {
 			throw new FileNotFoundException(input.toString());
 		}
@@ -83,7 +105,7 @@ public class RemapJarTask extends Jar {
 		Set<File> classpathFiles = new LinkedHashSet<>(
 						project.getConfigurations().getByName("compileClasspath").getFiles()
 		);
-		Path[] classpath = classpathFiles.stream().map(File::toPath).filter((p) -> !input.equals(p) && Files.exists(p)).toArray(Path[]::new);
+		Path[] classpath = ClassPathSnapshot.of(project, classpathFiles.stream().map(File::toPath).filter((p) -> !input.equals(p) && Files.exists(p)).toArray(Path[]::new));
 
 		File mixinMapFile = mappingsProvider.MAPPINGS_MIXIN_EXPORT;
 		Path mixinMapPath = mixinMapFile.toPath();
@@ -97,8 +119,6 @@ public class RemapJarTask extends Jar {
 			remapperBuilder = remapperBuilder.withMappings(TinyUtils.createTinyMappingProvider(mixinMapPath, fromM, toM));
 		}
 
-		project.getLogger().lifecycle(":remapping " + input.getFileName());
-
 		StringBuilder rc = new StringBuilder("Remap classpath: ");
 
 		for (Path p : classpath) {
@@ -107,6 +127,43 @@ public class RemapJarTask extends Jar {
 
 		project.getLogger().debug(rc.toString());
 
+		String key = null;
+		Map<String, EntryHash> entries = null;
+		Path cache = extension.getProjectBuildCache().toPath().resolve("remapped_jars");
+		Path manifestFile = cache.resolve(task.getName() + ".manifest");
+		Path previous = cache.resolve(task.getName() + ".jar");
+
+		if (incremental) {
+			key = getIncrementalKey(project, extension, fromM, toM, mixinMapFile, classpath, addNestedDependencies, skipATs);
+			entries = RemapManifest.hash(input);
+
+			RemapManifest manifest = RemapManifest.read(manifestFile);
+			Set<String> changed = manifest != null ? manifest.findChangedClasses(key, previous, entries) : null;
+
+			if (changed != null) {
+				if (changed.isEmpty()) {
+					project.getLogger().lifecycle(":remapping " + input.getFileName() + " (unchanged)");
+				} else {
+					project.getLogger().lifecycle(":remapping " + changed.size() + " changed classes in " + input.getFileName());
+					remapClasses(remapperBuilder, classpath, input, changed, previous);
+				}
+
+				Files.copy(previous, output, StandardCopyOption.REPLACE_EXISTING);
+				RemapManifest.write(manifestFile, key, previous, entries);
+				return;
+			}
+		}
+
+		project.getLogger().lifecycle(":remapping " + input.getFileName());
+
+		//Everything which used to be done by rewriting the jar after remapping is done whilst it is first written instead
+		List<JarEntryProcessor> processors = new ArrayList<>();
+		processors.add(MixinRefmapHelper.refmapProcessor(extension.getRefmapName(), extension.getMixinJsonVersion()));
+		if (addNestedDependencies) {
+			JarEntryProcessor nesting = NestedJars.nestingProcessor(project);
+			if (nesting != null) processors.add(nesting);
+		}
+
 		TinyRemapper remapper = remapperBuilder.build();
 
 		try (OutputConsumerPath outputConsumer = new OutputConsumerPath(output)) {
@@ -117,6 +174,9 @@ public class RemapJarTask extends Jar {
 			if (!skipATs && AccessTransformerHelper.obfATs(extension, task, remapper, outputConsumer)) {
 				project.getLogger().info("Remapped access transformer");
 			}
+			if (JarEntryProcessor.apply(input, outputConsumer, task.getTemporaryDir().toPath(), processors)) {
+				project.getLogger().debug("Transformed mixin reference maps and nested jars in output JAR!");
+			}
 		} catch (Exception e) {
 			throw new RuntimeException("Failed to remap " + input + " to " + output, e);
 		} finally {
@@ -127,12 +187,72 @@ public class RemapJarTask extends Jar {
 			throw new RuntimeException("Failed to remap " + input + " to " + output + " - file missing!");
 		}
 
-		if (MixinRefmapHelper.addRefmapName(extension.getRefmapName(), extension.getMixinJsonVersion(), output)) {
-			project.getLogger().debug("Transformed mixin reference maps in output JAR!");
+		if (incremental) {
+			//Keep a copy of the output out of the way of the jar task so the next build has something to patch
+			Files.createDirectories(cache);
+			Files.copy(output, previous, StandardCopyOption.REPLACE_EXISTING);
+			RemapManifest.write(manifestFile, key, previous, entries);
+		}
+	}
+
+	private static String getIncrementalKey(Project project, LoomGradleExtension extension, String fromM, String toM, File mixinMapFile, Path[] classpath, boolean addNestedDependencies, boolean skipATs) throws IOException {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putString(fromM, StandardCharsets.UTF_8).putString(toM, StandardCharsets.UTF_8);
+		hasher.putString(Checksum.sha256(extension.getMappingsProvider().MAPPINGS_TINY), StandardCharsets.UTF_8);
+		hasher.putString(mixinMapFile.exists() ? Checksum.sha256(mixinMapFile) : "", StandardCharsets.UTF_8);
+		hasher.putBoolean(extension.shouldBulldozeMappings()).putBoolean(skipATs).putBoolean(addNestedDependencies);
+		hasher.putString(String.valueOf(extension.getRefmapName()), StandardCharsets.UTF_8).putString(String.valueOf(extension.getMixinJsonVersion()), StandardCharsets.UTF_8);
+
+		for (Path path : classpath) {
+			hasher.putString(path.toString(), StandardCharsets.UTF_8).putLong(Files.size(path)).putLong(Files.getLastModifiedTime(path).toMillis());
+		}
+
+		if (addNestedDependencies) {
+			for (File file : NestedJars.getContainedJars(project)) {
+				hasher.putString(file.getPath(), StandardCharsets.UTF_8).putLong(file.length()).putLong(file.lastModified());
+			}
 		}
 
-		if (addNestedDependencies && NestedJars.addNestedJars(project, output)) {
-			project.getLogger().debug("Added nested jar paths to mod json");
+		return hasher.hash().toString();
+	}
+
+	private static void remapClasses(TinyRemapper.Builder remapperBuilder, Path[] classpath, Path input, Set<String> classes, Path output) throws IOException {
+		Path temp = Files.createTempDirectory("loom-remap");
+
+		try {
+			//The rest of the jar is still needed for its hierarchy, but mustn't be read as input too
+			Path stubs = temp.resolve("stubs.jar");
+			RemapManifest.writeStubs(input, classes, stubs);
+
+			Path inputs = temp.resolve("classes");
+			try (FileSystem fs = FileSystems.newFileSystem(input, (ClassLoader) null)) {
+				for (String name : classes) {
+					Path target = inputs.resolve(name);
+					Files.createDirectories(target.getParent());
+					Files.copy(fs.getPath(name), target);
+				}
+			}
+
+			Map<String, byte[]> remapped = new ConcurrentHashMap<>();
+			TinyRemapper remapper = remapperBuilder.build();
+
+			try {
+				remapper.readClassPath(classpath);
+				remapper.readClassPath(stubs);
+				remapper.readInputs(inputs);
+				remapper.apply(remapped::put);
+			} finally {
+				remapper.finish();
+			}
+
+			//Only method bodies have changed, so the remapped classes will have the same names they did before
+			try (FileSystem fs = FileSystems.newFileSystem(output, (ClassLoader) null)) {
+				for (Map.Entry<String, byte[]> entry : remapped.entrySet()) {
+					Files.write(fs.getPath(entry.getKey() + ".class"), entry.getValue());
+				}
+			}
+		} finally {
+			Files.walkFileTree(temp, new DeletingFileVisitor());
 		}
 	}
 
@@ -150,6 +270,15 @@ public class RemapJarTask extends Jar {
 		includeAT = include;
 	}
 
+	@Input
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
 	@Input
 	public boolean isAddNestedDependencies() {
 		return addNestedDependencies;
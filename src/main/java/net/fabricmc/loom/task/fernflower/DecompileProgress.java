@@ -0,0 +1,173 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.task.fernflower;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.gradle.internal.logging.progress.ProgressLogger;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+
+/**
+ * Receives the progress sent by each {@link ProgressReporter} a decompile starts, showing what every thread is doing in its own progress logger.
+ *
+ * <p>Any number of decompilers can report to the same port, the threads of each are kept apart by the connection they come from.
+ */
+class DecompileProgress implements Closeable {
+	private final ProgressLoggerFactory factory;
+	private final ProgressLogger progressGroup;
+	private final ServerSocket server;
+	private final List<Thread> readers = new CopyOnWriteArrayList<>();
+	private final Deque<ProgressLogger> freeLoggers = new ArrayDeque<>();
+	private final Map<String, ProgressLogger> inUseLoggers = new HashMap<>();
+
+	DecompileProgress(ProgressLoggerFactory factory, Class<?> owner) throws IOException {
+		this.factory = factory;
+		progressGroup = factory.newOperation(owner).setDescription("Decompile");
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+		progressGroup.started();
+		Thread acceptor = new Thread(this::accept, "Decompile progress");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * The port which {@link ProgressReporter}s should connect to.
+	 */
+	int getPort() {
+		return server.getLocalPort();
+	}
+
+	private void accept() {
+		for (int connection = 0; !server.isClosed(); connection++) {
+			Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				return; //The server has been closed
+			}
+
+			String prefix = connection + ":";
+			Thread reader = new Thread(() -> read(socket, prefix), "Decompile progress " + connection);
+			reader.setDaemon(true);
+			readers.add(reader);
+			reader.start();
+		}
+	}
+
+	private void read(Socket socket, String prefix) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+			while (true) {
+				int count;
+				try {
+					count = in.readInt();
+				} catch (EOFException e) {
+					break; //The decompiler has finished
+				}
+
+				for (int i = 0; i < count; i++) {
+					String id = prefix + in.readLong();
+					update(id, in.readBoolean() ? in.readUTF() : null);
+				}
+			}
+		} catch (IOException e) {
+			//The decompiler has gone away part way through a snapshot, which it will complain about itself
+		} finally {
+			release(prefix);
+		}
+	}
+
+	private synchronized void update(String id, String status) {
+		ProgressLogger logger = inUseLoggers.get(id);
+
+		if (status == null) {
+			if (logger != null) {
+				logger.progress("Idle..");
+				inUseLoggers.remove(id);
+				freeLoggers.push(logger);
+			}
+		} else {
+			if (logger == null) {
+				logger = freeLoggers.poll();
+
+				if (logger == null) {
+					logger = factory.newOperation(DecompileProgress.class, progressGroup);
+					logger.setDescription("decompile worker");
+					logger.started();
+				}
+
+				inUseLoggers.put(id, logger);
+			}
+
+			logger.progress(status);
+		}
+	}
+
+	private synchronized void release(String prefix) {
+		for (Iterator<Entry<String, ProgressLogger>> it = inUseLoggers.entrySet().iterator(); it.hasNext();) {
+			Entry<String, ProgressLogger> entry = it.next();
+
+			if (entry.getKey().startsWith(prefix)) {
+				entry.getValue().progress("Idle..");
+				freeLoggers.push(entry.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		server.close();
+
+		try {
+			for (Thread reader : readers) {
+				reader.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (this) {
+			inUseLoggers.values().forEach(ProgressLogger::completed);
+			freeLoggers.forEach(ProgressLogger::completed);
+			progressGroup.completed();
+		}
+	}
+}
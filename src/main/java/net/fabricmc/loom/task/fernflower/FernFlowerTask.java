@@ -24,26 +24,41 @@
 
 package net.fabricmc.loom.task.fernflower;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
-import java.util.function.Supplier;
+import java.util.TreeMap;
 
+import javax.inject.Inject;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.logging.LoggingManager;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
-import org.gradle.internal.logging.progress.ProgressLogger;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
-import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.process.ExecResult;
+import org.gradle.workers.IsolationMode;
+import org.gradle.workers.WorkerExecutor;
 
+import org.jetbrains.java.decompiler.main.Fernflower;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger.Severity;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 
@@ -57,7 +72,10 @@ import net.fabricmc.loom.util.OperatingSystem;
  */
 public class FernFlowerTask extends AbstractDecompileTask implements ForkingJavaExecTask {
 	private boolean noFork = false;
+	private boolean incremental = true;
 	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private int workerCount = 1;
+	private String workerHeap = "3G";
 
 	@TaskAction
 	public void doTask() throws Throwable {
@@ -73,109 +91,194 @@ public class FernFlowerTask extends AbstractDecompileTask implements ForkingJava
         options.put(IFernflowerPreferences.LOG_LEVEL, "trace");
         ((LoggingManager) getLogging()).captureStandardOutput(LogLevel.LIFECYCLE);
 
+		ProgressLoggerFactory factory = ((ProjectInternal) getProject()).getServices().get(ProgressLoggerFactory.class);
+
+		try (DecompileProgress progress = new DecompileProgress(factory, getClass())) {
+			decompile(options, progress.getPort());
+		}
+	}
+
+	private static void putCodeSource(Hasher hasher, Class<?> type) {
+		CodeSource source = type.getProtectionDomain().getCodeSource();
+
+		if (source != null && "file".equals(source.getLocation().getProtocol())) {
+			try {
+				File file = new File(source.getLocation().toURI());
+				hasher.putString(file.getAbsolutePath(), StandardCharsets.UTF_8).putLong(file.length()).putLong(file.lastModified());
+				return;
+			} catch (URISyntaxException e) {
+				//Fall back to the version
+			}
+		}
+
+		Package pkg = type.getPackage();
+		hasher.putString(type.getName() + '@' + (pkg != null ? pkg.getImplementationVersion() : null), StandardCharsets.UTF_8);
+	}
+
+	private void decompile(Map<String, Object> options, int progressPort) throws IOException {
+		File input = getInput();
+		File output = getOutput();
+		File lineMap = getLineMapFile();
+		Path mappings = getExtension().getMappingsProvider().getDecompileMappings();
+		File manifest = new File(output.getParentFile(), output.getName() + ".manifest");
+
+		IncrementalDecompile plan;
+		if (!isIncremental() || lineMap == null) {
+			Files.deleteIfExists(manifest.toPath()); //Whatever it says won't be true once the output has been replaced
+
+			if (getWorkers() <= 1) {
+				decompile(buildArgs(options, input, output, lineMap, getNumThreads(), progressPort, Collections.emptyList()));
+				return;
+			}
+
+			plan = IncrementalDecompile.full(input, output, lineMap);
+		} else {
+			Hasher globalKey = Hashing.murmur3_128().newHasher();
+			//Upgrading the decompiler or Loom could change any of the output
+			putCodeSource(globalKey, Fernflower.class);
+			putCodeSource(globalKey, FernFlowerTask.class);
+			new TreeMap<>(options).forEach((k, v) -> globalKey.putString(k + '=' + v, StandardCharsets.UTF_8));
+			for (File library : getLibraries()) {
+				globalKey.putString(library.getAbsolutePath(), StandardCharsets.UTF_8).putLong(library.length()).putLong(library.lastModified());
+			}
+
+			Map<String, Long> comments = Files.exists(mappings) ? JavadocProvider.of(mappings.toFile()).hashComments() : Collections.emptyMap();
+			plan = IncrementalDecompile.plan(input, output, lineMap, manifest, globalKey.hash().toString(), comments);
+
+			if (plan.isUpToDate()) {
+				getLogger().lifecycle(":decompiled sources are up to date");
+				return;
+			}
+
+			if (plan.isFull() && getWorkers() <= 1) {
+				decompile(buildArgs(options, input, output, lineMap, getNumThreads(), progressPort, Collections.emptyList()));
+				plan.saveManifest();
+				return;
+			}
+
+			if (!plan.isFull()) getLogger().lifecycle(":decompiling " + plan.getChangedClasses() + " of " + plan.getTotalClasses() + " classes");
+		}
+
+		List<File> partitions = plan.writePartitions(getTemporaryDir(), getWorkers());
+		List<File> sources = new ArrayList<>(partitions.size());
+		List<File> lineMaps = new ArrayList<>(partitions.size());
+		List<String[]> work = new ArrayList<>(partitions.size());
+		int threads = Math.max(1, getNumThreads() / partitions.size());
+
+		for (File partition : partitions) {
+			String name = partition.getName().substring(0, partition.getName().length() - 4);
+			File partitionSources = new File(getTemporaryDir(), name + "-sources.jar");
+			File partitionLineMap = lineMap != null ? new File(getTemporaryDir(), name + "-sources.lmap") : null;
+
+			sources.add(partitionSources);
+			if (partitionLineMap != null) lineMaps.add(partitionLineMap);
+			//The rest of the jar is still needed for context, but shouldn't be decompiled by this partition
+			work.add(buildArgs(options, partition, partitionSources, partitionLineMap, threads, progressPort, Collections.singletonList(input)));
+		}
+
+		if (work.size() == 1) {
+			decompile(work.get(0));
+		} else {
+			getLogger().lifecycle(":decompiling in " + work.size() + " workers with " + getWorkerHeap() + " of heap each");
+			WorkerExecutor executor = getWorkerExecutor();
+			FileCollection classpath = getProject().getBuildscript().getConfigurations().getByName("classpath");
+
+			for (int i = 0; i < work.size(); i++) {
+				String[] args = work.get(i);
+				String name = partitions.get(i).getName();
+
+				executor.submit(DecompileWorker.class, config -> {
+					config.setIsolationMode(IsolationMode.PROCESS);
+					config.setDisplayName("Decompile " + name);
+					config.classpath(classpath);
+					config.forkOptions(fork -> fork.setMaxHeapSize(getWorkerHeap()));
+					config.params((Object) args);
+				});
+			}
+
+			executor.await();
+		}
+
+		plan.merge(sources, lineMaps);
+		if (isIncremental() && lineMap != null) plan.saveManifest();
+	}
+
+	/**
+	 * The number of worker processes to spread decompiling over, which will always be {@code 1} when not forking.
+	 */
+	private int getWorkers() {
+		return isNoFork() ? 1 : Math.max(1, getWorkerCount());
+	}
+
+	private String[] buildArgs(Map<String, Object> options, File input, File output, File lineMap, int threads, int progressPort, List<File> extraLibraries) {
 		List<String> args = new ArrayList<>();
 
 		options.forEach((k, v) -> args.add(MessageFormat.format("-{0}={1}", k, v)));
-		args.add(getInput().getAbsolutePath());
-		args.add("-o=" + getOutput().getAbsolutePath());
+		args.add(input.getAbsolutePath());
+		args.add("-o=" + output.getAbsolutePath());
 
-		if (getLineMapFile() != null) {
-			args.add("-l=" + getLineMapFile().getAbsolutePath());
+		if (lineMap != null) {
+			args.add("-l=" + lineMap.getAbsolutePath());
 		}
 
-		args.add("-t=" + getNumThreads());
+		args.add("-t=" + threads);
+		args.add("-p=" + progressPort);
 		args.add("-m=" + getExtension().getMappingsProvider().getDecompileMappings().toAbsolutePath());
 
 		//TODO, Decompiler breaks on jemalloc, J9 module-info.class?
 		getLibraries().forEach(f -> args.add("-e=" + f.getAbsolutePath()));
+		extraLibraries.forEach(f -> args.add("-e=" + f.getAbsolutePath()));
+
+		return args.toArray(new String[0]);
+	}
 
-		ServiceRegistry registry = ((ProjectInternal) getProject()).getServices();
-        ProgressLoggerFactory factory = registry.get(ProgressLoggerFactory.class);
-        ProgressLogger progressGroup = factory.newOperation(getClass()).setDescription("Decompile");
-        Supplier<ProgressLogger> loggerFactory = () -> {
-            ProgressLogger pl = factory.newOperation(getClass(), progressGroup);
-            pl.setDescription("decompile worker");
-            pl.started();
-            return pl;
-        };
-        Stack<ProgressLogger> freeLoggers = new Stack<>();
-        Map<String, ProgressLogger> inUseLoggers = new HashMap<>();
-
-        OutputStream stdOutput = new ConsumingOutputStream(line -> {
-            if (line.startsWith("Listening for transport")) {
-                System.out.println(line);
-                return;
-            }
-
-            int sepIdx = line.indexOf("::");
-            if (sepIdx < 1) {
-            	getLogger().error("Unprefixed line: " + line);
-            	return;
-            }
-            String id = line.substring(0, sepIdx).trim();
-            String data = line.substring(sepIdx + 2).trim();
-
-            ProgressLogger logger = inUseLoggers.get(id);
-
-            String[] segs = data.split(" ");
-            if (segs[0].equals("waiting")) {
-                if (logger != null) {
-                    logger.progress("Idle..");
-                    inUseLoggers.remove(id);
-                    freeLoggers.push(logger);
-                }
-            } else {
-                if (logger == null) {
-                    if (!freeLoggers.isEmpty()) {
-                        logger = freeLoggers.pop();
-                    } else {
-                        logger = loggerFactory.get();
-                    }
-                    inUseLoggers.put(id, logger);
-                }
-
-                if (data.startsWith(Severity.INFO.prefix)) {
-                	logger.progress(data.substring(Severity.INFO.prefix.length()));
-                } else if (data.startsWith(Severity.TRACE.prefix)) {
-                	logger.progress(data.substring(Severity.TRACE.prefix.length()));
-                } else if (data.startsWith(Severity.WARN.prefix)) {
-                	getLogger().warn(data.substring(Severity.WARN.prefix.length()));
-                } else {
-                	getLogger().error(data.substring(Severity.ERROR.prefix.length()));
-                }
-            }
-        });
-        OutputStream errOutput = System.err;
-
-        try {
-	        progressGroup.started();
-
-	        if (!isNoFork()) {
-		        ExecResult result = javaexec(spec -> {
-		            spec.setMain(ForkedFFExecutor.class.getName());
-		            spec.jvmArgs("-Xms200m", "-Xmx3G");
-		            spec.setArgs(args);
-		            spec.setErrorOutput(errOutput);
-		            spec.setStandardOutput(stdOutput);
-		        });
-
-		        result.rethrowFailure();
-		        result.assertNormalExitValue();
-	        } else {
-	        	ForkedFFExecutor.main(args.toArray(new String[0]), new PrintStream(stdOutput, true), new PrintStream(errOutput, true));
-	        }
-        } finally {
-	        inUseLoggers.values().forEach(ProgressLogger::completed);
-	        freeLoggers.forEach(ProgressLogger::completed);
-	        progressGroup.completed();
-        }
-    }
+	private void decompile(String[] args) throws IOException {
+		OutputStream stdOutput = new ConsumingOutputStream(line -> {
+			if (line.startsWith(Severity.WARN.prefix)) {
+				getLogger().warn(line.substring(Severity.WARN.prefix.length()));
+			} else if (line.startsWith(Severity.ERROR.prefix)) {
+				getLogger().error(line.substring(Severity.ERROR.prefix.length()));
+			} else {
+				System.out.println(line);
+			}
+		});
+		OutputStream errOutput = System.err;
+
+		if (!isNoFork()) {
+			ExecResult result = javaexec(spec -> {
+				spec.setMain(ForkedFFExecutor.class.getName());
+				spec.jvmArgs("-Xms200m", "-Xmx" + getWorkerHeap());
+				spec.setArgs(Arrays.asList(args));
+				spec.setErrorOutput(errOutput);
+				spec.setStandardOutput(stdOutput);
+			});
+
+			result.rethrowFailure();
+			result.assertNormalExitValue();
+		} else {
+			ForkedFFExecutor.main(args, new PrintStream(stdOutput, true), new PrintStream(errOutput, true));
+		}
+	}
+
+	@Inject
+	protected WorkerExecutor getWorkerExecutor() {
+		throw new UnsupportedOperationException("Should have been injected");
+	}
 
 	@Internal
 	public int getNumThreads() {
 		return numThreads;
 	}
 
+	@Internal
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
 	@Internal
 	public boolean isNoFork() {
 		return noFork;
@@ -188,4 +291,28 @@ public class FernFlowerTask extends AbstractDecompileTask implements ForkingJava
 	public void setNumThreads(int numThreads) {
 		this.numThreads = numThreads;
 	}
+
+	/**
+	 * The number of worker processes the classes are split between, each of which gets an equal share of {@link #getNumThreads()}.
+	 */
+	@Internal
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	public void setWorkerCount(int workerCount) {
+		this.workerCount = workerCount;
+	}
+
+	/**
+	 * The maximum heap size of each forked decompiler, in the same format as {@code -Xmx}.
+	 */
+	@Internal
+	public String getWorkerHeap() {
+		return workerHeap;
+	}
+
+	public void setWorkerHeap(String workerHeap) {
+		this.workerHeap = workerHeap;
+	}
 }
@@ -34,7 +34,6 @@ import java.util.Map;
 import java.util.Objects;
 
 import org.jetbrains.java.decompiler.main.Fernflower;
-import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 
 import net.fabricmc.fernflower.api.IFabricJavadocProvider;
@@ -59,6 +58,7 @@ public class ForkedFFExecutor {
 		File mappings = null;
 		List<File> libraries = new ArrayList<>();
 		int numThreads = 0;
+		int progressPort = 0;
 
 		boolean isOption = true;
 		for (String arg : args) {
@@ -97,6 +97,8 @@ public class ForkedFFExecutor {
 					mappings = new File(arg.substring(3));
 				} else if (arg.startsWith("-t=")) {
 					numThreads = Integer.parseInt(arg.substring(3));
+				} else if (arg.startsWith("-p=")) {
+					progressPort = Integer.parseInt(arg.substring(3));
 				} else {
 					if (input != null) {
 						throw new RuntimeException("Unable to set more than one input.");
@@ -111,13 +113,16 @@ public class ForkedFFExecutor {
 		Objects.requireNonNull(output, "Output not set.");
 		Objects.requireNonNull(mappings, "Mappings not set.");
 
-		if (mappings.exists()) options.put(IFabricJavadocProvider.PROPERTY_NAME, new JavadocProvider(mappings));
-		runFF(options, libraries, input, output, lineMap, stdOut, errOut);
+		if (mappings.exists()) options.put(IFabricJavadocProvider.PROPERTY_NAME, JavadocProvider.of(mappings));
+		runFF(options, libraries, input, output, lineMap, stdOut, errOut, progressPort);
 	}
 
-	public static void runFF(Map<String, Object> options, List<File> libraries, File input, File output, File lineMap, PrintStream stdOut, PrintStream stdErr) {
+	/**
+	 * Decompile the input, sending what each thread is doing to the given port on the loopback address if it is not {@code 0}.
+	 */
+	public static void runFF(Map<String, Object> options, List<File> libraries, File input, File output, File lineMap, PrintStream stdOut, PrintStream stdErr, int progressPort) throws IOException {
 		IResultSaver saver = new ThreadSafeResultSaver(() -> output, () -> lineMap);
-		IFernflowerLogger logger = new ThreadIDFFLogger(stdOut, stdErr);
+		ThreadIDFFLogger logger = new ThreadIDFFLogger(stdOut, stdErr);
 		Fernflower ff = new Fernflower(FernFlowerUtils::getBytecode, saver, options, logger);
 
 		for (File library : libraries) {
@@ -125,6 +130,21 @@ public class ForkedFFExecutor {
 		}
 
         ff.getStructContext().addSpace(input, true);
-		ff.decompileContext();
+
+        ProgressReporter reporter = null;
+        if (progressPort != 0) {
+        	try {
+        		reporter = new ProgressReporter(logger, progressPort);
+        	} catch (IOException e) {
+        		//Losing the progress is still no reason to stop decompiling
+        		stdErr.println("Unable to report decompile progress: " + e);
+        	}
+        }
+
+        try {
+        	ff.decompileContext();
+        } finally {
+        	if (reporter != null) reporter.close();
+        }
 	}
 }
@@ -0,0 +1,428 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.task.fernflower;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.objectweb.asm.ClassReader;
+
+import net.fabricmc.loom.util.ClassPathSnapshot;
+import net.fabricmc.loom.util.DeflatedZipWriter;
+import net.fabricmc.loom.util.LineNumberRemapper;
+
+/**
+ * Works out which classes in a jar need decompiling again given what they looked like when the jar was last decompiled.
+ *
+ * <p>Classes are grouped by their top level class, as that is what the decompiler produces a source file for. A group needs decompiling
+ * again if any of its classes or their Javadoc comments have changed, or if it refers to a group whose signature has changed (or which
+ * has been added or removed), as that can change how the group's own code decompiles. References are found from class constants, descriptors
+ * and generic signatures, and a group whose supertypes' signatures have changed is treated as having changed signature too.
+ */
+class IncrementalDecompile {
+	private static final String HEADER = "loom-decompile-manifest\t1";
+
+	private static class ClassGroup {
+		final Map<String, byte[]> files = new TreeMap<>();
+		final Set<String> references = new HashSet<>();
+		final Set<String> supertypes = new HashSet<>();
+		String key, signature;
+
+		long size() {
+			long size = 0;
+			for (byte[] file : files.values()) size += file.length;
+			return size;
+		}
+	}
+
+	private final File output, lineMap, manifest;
+	private final String globalKey;
+	private final Map<String, ClassGroup> groups;
+	private final Set<String> toDecompile;
+	private final boolean full;
+
+	private IncrementalDecompile(File output, File lineMap, File manifest, String globalKey, Map<String, ClassGroup> groups, Set<String> toDecompile, boolean full) {
+		this.output = output;
+		this.lineMap = lineMap;
+		this.manifest = manifest;
+		this.globalKey = globalKey;
+		this.groups = groups;
+		this.toDecompile = toDecompile;
+		this.full = full;
+	}
+
+	/**
+	 * Plan decompiling every class in the jar without recording anything for next time.
+	 */
+	static IncrementalDecompile full(File input, File output, File lineMap) throws IOException {
+		Map<String, ClassGroup> groups = readGroups(input, Collections.emptyMap());
+		return new IncrementalDecompile(output, lineMap, null, null, groups, groups.keySet(), true);
+	}
+
+	static IncrementalDecompile plan(File input, File output, File lineMap, File manifest, String globalKey, Map<String, Long> commentHashes) throws IOException {
+		Map<String, ClassGroup> groups = readGroups(input, commentHashes);
+		Map<String, String[]> previous = readManifest(manifest, globalKey);
+
+		if (previous == null || !output.exists() || !isBinaryLineMap(lineMap)) {
+			return new IncrementalDecompile(output, lineMap, manifest, globalKey, groups, groups.keySet(), true);
+		}
+
+		Set<String> toDecompile = new HashSet<>();
+		Set<String> changedSignatures = new HashSet<>(previous.keySet());
+		changedSignatures.removeAll(groups.keySet()); //Anything removed has changed signature
+
+		for (Entry<String, ClassGroup> entry : groups.entrySet()) {
+			String[] last = previous.get(entry.getKey());
+			ClassGroup group = entry.getValue();
+
+			if (last == null || !last[0].equals(group.key)) {
+				toDecompile.add(entry.getKey());
+				if (last == null || !last[1].equals(group.signature)) changedSignatures.add(entry.getKey());
+			}
+		}
+
+		if (!changedSignatures.isEmpty()) {
+			//A group inherits whatever changed in its supertypes, so anything referring to it has to be redone too
+			for (boolean grew = true; grew;) {
+				grew = false;
+
+				for (Entry<String, ClassGroup> entry : groups.entrySet()) {
+					if (!changedSignatures.contains(entry.getKey()) && !Collections.disjoint(entry.getValue().supertypes, changedSignatures)) {
+						grew |= changedSignatures.add(entry.getKey());
+					}
+				}
+			}
+
+			for (Entry<String, ClassGroup> entry : groups.entrySet()) {
+				if (!toDecompile.contains(entry.getKey()) && !Collections.disjoint(entry.getValue().references, changedSignatures)) {
+					toDecompile.add(entry.getKey());
+				}
+			}
+		}
+
+		return new IncrementalDecompile(output, lineMap, manifest, globalKey, groups, toDecompile, toDecompile.size() == groups.size());
+	}
+
+	private static Map<String, ClassGroup> readGroups(File input, Map<String, Long> commentHashes) throws IOException {
+		Map<String, ClassGroup> groups = new TreeMap<>();
+
+		try (ZipFile zip = new ZipFile(input)) {
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+				ZipEntry entry = it.nextElement();
+				String name = entry.getName();
+				if (entry.isDirectory() || !name.endsWith(".class")) continue;
+
+				byte[] contents;
+				try (InputStream in = zip.getInputStream(entry)) {
+					contents = ByteStreams.toByteArray(in);
+				}
+
+				ClassGroup group = groups.computeIfAbsent(topLevel(name.substring(0, name.length() - 6)), k -> new ClassGroup());
+				group.files.put(name, contents);
+				ClassReader reader = new ClassReader(contents);
+				findReferences(reader, group.references);
+
+				if (reader.getSuperName() != null) group.supertypes.add(topLevel(reader.getSuperName()));
+				for (String type : reader.getInterfaces()) {
+					group.supertypes.add(topLevel(type));
+				}
+			}
+		}
+
+		for (Entry<String, ClassGroup> entry : groups.entrySet()) {
+			ClassGroup group = entry.getValue();
+			group.references.remove(entry.getKey());
+			group.supertypes.remove(entry.getKey());
+
+			Hasher key = Hashing.murmur3_128().newHasher();
+			Hasher signature = Hashing.murmur3_128().newHasher();
+
+			for (Entry<String, byte[]> file : group.files.entrySet()) {
+				key.putString(file.getKey(), StandardCharsets.UTF_8).putBytes(file.getValue());
+
+				signature.putString(file.getKey(), StandardCharsets.UTF_8).putBytes(ClassPathSnapshot.stripCode(new ClassReader(file.getValue())));
+			}
+
+			key.putLong(commentHashes.getOrDefault(entry.getKey(), 0L));
+			group.key = key.hash().toString();
+			group.signature = signature.hash().toString();
+		}
+
+		return groups;
+	}
+
+	private static void findReferences(ClassReader reader, Set<String> references) {
+		char[] buffer = new char[reader.getMaxStringLength()];
+
+		for (int i = 1; i < reader.getItemCount(); i++) {
+			int offset = reader.getItem(i);
+
+			if (offset <= 0) continue;
+
+			switch (reader.b[offset - 1]) {
+			case 7: {//CONSTANT_Class
+				String name = reader.readUTF8(offset, buffer);
+
+				if (name.charAt(0) == '[') {
+					int start = name.lastIndexOf('[') + 1;
+					if (name.charAt(start) != 'L') continue; //Primitive array
+					name = name.substring(start + 1, name.length() - 1);
+				}
+
+				references.add(topLevel(name));
+				break;
+			}
+
+			case 1: {//CONSTANT_Utf8, which holds every descriptor and generic signature
+				String value = new String(reader.b, offset + 2, reader.readUnsignedShort(offset), StandardCharsets.UTF_8);
+				if (value.indexOf(';') > 0) findDescriptorTypes(value, references);
+				break;
+			}
+			}
+		}
+	}
+
+	/**
+	 * Find the object types in what might be a descriptor or generic signature. Anything else which happens to look like one is
+	 * harmless, as the worst that can happen is a group being decompiled when it didn't need to be.
+	 */
+	private static void findDescriptorTypes(String value, Set<String> references) {
+		for (int i = value.indexOf('L'); i >= 0; i = value.indexOf('L', i + 1)) {
+			int end = i + 1;
+			while (end < value.length() && value.charAt(end) != ';' && value.charAt(end) != '<') {
+				char c = value.charAt(end);
+				if (c != '/' && c != '$' && !Character.isJavaIdentifierPart(c)) break;
+				end++;
+			}
+
+			if (end < value.length() && end > i + 1 && (value.charAt(end) == ';' || value.charAt(end) == '<')) {
+				references.add(topLevel(value.substring(i + 1, end)));
+				i = end;
+			}
+		}
+	}
+
+	/** The name of the outermost class the given class is nested in, or itself if it isn't nested */
+	static String topLevel(String className) {
+		int split = className.indexOf('$');
+		return split > 0 ? className.substring(0, split) : className;
+	}
+
+	private static Map<String, String[]> readManifest(File manifest, String globalKey) {
+		if (!manifest.exists()) return null;
+
+		try (BufferedReader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+			if (!HEADER.equals(reader.readLine()) || !globalKey.equals(reader.readLine())) return null;
+			Map<String, String[]> previous = new HashMap<>();
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+				if (parts.length != 3) return null;
+				previous.put(parts[0], new String[] {parts[1], parts[2]});
+			}
+
+			return previous;
+		} catch (IOException e) {
+			return null; //Something is wrong with the manifest, so everything will have to be decompiled
+		}
+	}
+
+	private static boolean isBinaryLineMap(File lineMap) {
+		if (lineMap == null || lineMap.length() < 4) return false;
+
+		try (DataInputStream in = new DataInputStream(new FileInputStream(lineMap))) {
+			return in.readInt() == LineNumberRemapper.BINARY_MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/** Whether every class needs decompiling, so there is nothing to be reused from before */
+	boolean isFull() {
+		return full;
+	}
+
+	/** Whether the previous output is still completely correct */
+	boolean isUpToDate() {
+		return toDecompile.isEmpty();
+	}
+
+	int getTotalClasses() {
+		return groups.size();
+	}
+
+	int getChangedClasses() {
+		return toDecompile.size();
+	}
+
+	/**
+	 * Write the classes which need decompiling again into at most {@code count} jars of roughly equal size, keeping each group together.
+	 *
+	 * @return The jars which have been written, none of which will be empty
+	 */
+	List<File> writePartitions(File directory, int count) throws IOException {
+		List<String> pending = new ArrayList<>(toDecompile);
+		pending.sort(Comparator.comparingLong((String name) -> groups.get(name).size()).reversed().thenComparing(Comparator.naturalOrder()));
+
+		int partitions = Math.max(1, Math.min(count, pending.size()));
+		List<List<String>> contents = new ArrayList<>(partitions);
+		long[] sizes = new long[partitions];
+		for (int i = 0; i < partitions; i++) contents.add(new ArrayList<>());
+
+		for (String name : pending) {
+			int smallest = 0;
+
+			for (int i = 1; i < partitions; i++) {
+				if (sizes[i] < sizes[smallest]) smallest = i;
+			}
+
+			contents.get(smallest).add(name);
+			sizes[smallest] += groups.get(name).size();
+		}
+
+		List<File> jars = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			if (contents.get(i).isEmpty()) continue;
+			File jar = new File(directory, "partition-" + i + ".jar");
+
+			try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(jar)))) {
+				for (String name : contents.get(i)) {
+					for (Entry<String, byte[]> file : groups.get(name).files.entrySet()) {
+						out.putNextEntry(new ZipEntry(file.getKey()));
+						out.write(file.getValue());
+						out.closeEntry();
+					}
+				}
+			}
+
+			jars.add(jar);
+		}
+
+		return jars;
+	}
+
+	/**
+	 * Combine the freshly decompiled sources and line maps with the parts of the previous ones which are still correct.
+	 *
+	 * @param sources The decompiled sources of each partition
+	 * @param sourcesLineMaps The line maps of each partition, ignored if there is no line map being made
+	 */
+	void merge(List<File> sources, List<File> sourcesLineMaps) throws IOException {
+		Set<String> reused = new HashSet<>(groups.keySet());
+		reused.removeAll(toDecompile);
+
+		File mergedSources = new File(output.getPath() + ".tmp");
+		try (DeflatedZipWriter out = new DeflatedZipWriter(mergedSources)) {
+			Set<String> written = new HashSet<>();
+			for (File partition : sources) copyEntries(partition, out, null, written);
+			if (!reused.isEmpty()) copyEntries(output, out, reused, written);
+		}
+
+		if (lineMap != null) {
+			File mergedLineMap = new File(lineMap.getPath() + ".tmp");
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mergedLineMap)))) {
+				out.writeInt(LineNumberRemapper.BINARY_MAGIC);
+				for (File partition : sourcesLineMaps) LineNumberRemapper.copyMappings(partition, out, name -> true);
+				if (!reused.isEmpty()) LineNumberRemapper.copyMappings(lineMap, out, reused::contains);
+			}
+
+			Files.move(mergedLineMap.toPath(), lineMap.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		Files.move(mergedSources.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void copyEntries(File from, DeflatedZipWriter to, Set<String> classes, Set<String> written) throws IOException {
+		try (ZipFile zip = new ZipFile(from)) {
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+				ZipEntry entry = it.nextElement();
+				String name = entry.getName();
+				if (entry.isDirectory()) continue;
+
+				if (classes != null) {
+					//Only the sources of the given classes are wanted, anything else (such as the manifest) comes from the new sources
+					if (!name.endsWith(".java") || !classes.contains(name.substring(0, name.length() - 5))) continue;
+				}
+
+				if (!written.add(name)) continue; //Each partition will have its own copy of anything which isn't a class
+
+				try (InputStream in = zip.getInputStream(entry)) {
+					to.write(DeflatedZipWriter.compress(name, ByteStreams.toByteArray(in)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Record what every class looked like for the next time the jar is decompiled.
+	 */
+	void saveManifest() throws IOException {
+		File temp = new File(manifest.getPath() + ".tmp");
+
+		try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(HEADER);
+			writer.newLine();
+			writer.write(globalKey);
+			writer.newLine();
+
+			for (Entry<String, ClassGroup> entry : groups.entrySet()) {
+				writer.write(entry.getKey() + '\t' + entry.getValue().key + '\t' + entry.getValue().signature);
+				writer.newLine();
+			}
+		}
+
+		Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
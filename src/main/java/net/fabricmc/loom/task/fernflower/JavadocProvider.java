@@ -7,16 +7,31 @@
  */
 package net.fabricmc.loom.task.fernflower;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.common.hash.Hashing;
 
 import org.jetbrains.java.decompiler.struct.StructClass;
 import org.jetbrains.java.decompiler.struct.StructField;
@@ -31,15 +46,55 @@ import net.fabricmc.mappings.model.CommentEntry.Method;
 import net.fabricmc.mappings.model.CommentEntry.Parameter;
 import net.fabricmc.mappings.model.Comments;
 
+/**
+ * Gives the decompiler the Javadoc for each class, method and field from the comments in a mappings file.
+ *
+ * <p>Every comment is joined into its final form when the provider is made and filed under its class, so looking one up from the
+ * decompiler's threads is only ever a couple of map lookups on the names the decompiler already has. As reading the mappings is far
+ * slower than reading the finished comments back, they are cached next to the mappings for as long as the mappings don't change.
+ */
 public class JavadocProvider implements IFabricJavadocProvider {
-	private final Map<String, List<String>> classComments;
-	private final Map<EntryTriple, List<String>> methodComments;
-	private final Map<EntryTriple, List<Parameter>> paramComments;
-	private final Map<EntryTriple, List<String>> fieldComments;
+	private static final int CACHE_MAGIC = 0x4A444F43;
+	private static final int CACHE_VERSION = 1;
+
+	private static class ClassDocs {
+		String doc;
+		final Map<String, Map<String, String>> methods = new HashMap<>();
+		final Map<String, Map<String, String>> fields = new HashMap<>();
+
+		static void put(Map<String, Map<String, String>> members, String name, String desc, String doc) {
+			members.computeIfAbsent(name, k -> new HashMap<>(2)).put(desc, doc);
+		}
+
+		static String get(Map<String, Map<String, String>> members, String name, String desc) {
+			Map<String, String> descs = members.get(name);
+			return descs != null ? descs.get(desc) : null;
+		}
+	}
+
+	private final Map<String, ClassDocs> classes;
 
-	public JavadocProvider(File mappings) {
+	private JavadocProvider(Map<String, ClassDocs> classes) {
+		this.classes = classes;
+	}
+
+	/**
+	 * Make a provider for the given mappings, from the cache if it was made from the mappings as they are now.
+	 */
+	public static JavadocProvider of(File mappings) {
 		assert mappings.exists();
+		File cache = new File(mappings.getPath() + ".javadoc");
 
+		Map<String, ClassDocs> classes = readCache(cache, mappings);
+		if (classes == null) {
+			classes = readMappings(mappings);
+			writeCache(cache, mappings, classes);
+		}
+
+		return new JavadocProvider(classes);
+	}
+
+	private static Map<String, ClassDocs> readMappings(File mappings) {
 		Comments comments;
 		try (InputStream in = new FileInputStream(mappings)) {
 			comments = MappingsProvider.readFullTinyMappings(in, true).getComments();
@@ -47,48 +102,185 @@ public class JavadocProvider implements IFabricJavadocProvider {
 			throw new RuntimeException("Error reading decompiler mappings at " + mappings, e);
 		}
 
-		classComments = comments.getClassComments().stream().collect(Collectors.toMap(Class::getClassName, Class::getComments));
-		methodComments = comments.getMethodComments().stream().collect(Collectors.toMap(Method::getMethod, Method::getComments));
-		paramComments = comments.getMethodParameterComments().stream().collect(Collectors.groupingBy(comment -> comment.getParameter().getMethod()));
-		fieldComments = comments.getFieldComments().stream().collect(Collectors.toMap(Field::getField, Field::getComments));
+		Map<String, ClassDocs> classes = new HashMap<>();
+
+		for (Class comment : comments.getClassComments()) {
+			classes.computeIfAbsent(comment.getClassName(), k -> new ClassDocs()).doc = String.join("\n", comment.getComments());
+		}
+
+		Map<EntryTriple, List<String>> methodComments = new HashMap<>();
+		for (Method comment : comments.getMethodComments()) {
+			methodComments.put(comment.getMethod(), comment.getComments());
+		}
+
+		Map<EntryTriple, List<Parameter>> paramComments = new HashMap<>();
+		for (Parameter comment : comments.getMethodParameterComments()) {
+			paramComments.computeIfAbsent(comment.getParameter().getMethod(), k -> new ArrayList<>()).add(comment);
+		}
+
+		Set<EntryTriple> methods = new HashSet<>(methodComments.keySet());
+		methods.addAll(paramComments.keySet());
+
+		for (EntryTriple method : methods) {
+			List<String> comment = methodComments.get(method);
+			List<Parameter> params = paramComments.get(method);
+			List<String> lines = comment != null ? new ArrayList<>(comment) : new ArrayList<>();
+
+			if (params != null) {
+				if (comment != null) lines.add(""); //Leave space between the method comment and the parameter comment(s)
+				params.sort(Comparator.comparingInt(param -> param.getParameter().getLocalVariableIndex()));
+
+				for (Parameter param : params) {
+					lines.add(String.format("@param %s %s", param.getParameter().getName(), String.join("\n\t", param.getComments())));
+				}
+			}
+
+			ClassDocs.put(classes.computeIfAbsent(method.getOwner(), k -> new ClassDocs()).methods, method.getName(), method.getDesc(), String.join("\n", lines));
+		}
+
+		for (Field comment : comments.getFieldComments()) {
+			EntryTriple field = comment.getField();
+			ClassDocs.put(classes.computeIfAbsent(field.getOwner(), k -> new ClassDocs()).fields, field.getName(), field.getDesc(), String.join("\n", comment.getComments()));
+		}
+
+		return classes;
 	}
 
-	@Override
-	public String getClassDoc(StructClass structClass) {
-		return Optional.ofNullable(classComments.get(structClass.qualifiedName)).map(comments -> String.join("\n", comments)).orElse(null);
+	private static Map<String, ClassDocs> readCache(File cache, File mappings) {
+		if (!cache.exists()) return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache)))) {
+			if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) return null;
+			if (in.readLong() != mappings.length() || in.readLong() != mappings.lastModified()) return null;
+
+			int classCount = in.readInt();
+			Map<String, ClassDocs> classes = new HashMap<>(classCount * 4 / 3 + 1);
+
+			for (int i = 0; i < classCount; i++) {
+				ClassDocs docs = new ClassDocs();
+				classes.put(readString(in), docs);
+
+				if (in.readBoolean()) docs.doc = readString(in);
+				readMembers(in, docs.methods);
+				readMembers(in, docs.fields);
+			}
+
+			return classes;
+		} catch (IOException e) {
+			return null; //Something is wrong with the cache, the mappings will just have to be read again
+		}
 	}
 
-	@Override
-	public String getMethodDoc(StructClass structClass, StructMethod structMethod) {
-		EntryTriple method = new EntryTriple(structClass.qualifiedName, structMethod.getName(), structMethod.getDescriptor());
-		List<String> comment = methodComments.get(method);
-		List<Parameter> params = paramComments.get(method);
-
-		if (comment == null) {
-			if (params == null) {
-				return null; //No comment for the method or any of it's parameters
-			} else {
-				comment = new ArrayList<>(); //Only parameter comments
+	private static void readMembers(DataInput in, Map<String, Map<String, String>> members) throws IOException {
+		for (int i = in.readInt(); i > 0; i--) {
+			String name = readString(in);
+			String desc = readString(in);
+			ClassDocs.put(members, name, desc, readString(in));
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeCache(File cache, File mappings, Map<String, ClassDocs> classes) {
+		Path temp = null;
+
+		try {
+			//Several decompilers can be started on the same mappings at once, so each writes its own file before swapping it in
+			temp = Files.createTempFile(cache.getParentFile().toPath(), cache.getName(), ".tmp");
+
+			try (OutputStream stream = Files.newOutputStream(temp); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+				out.writeInt(CACHE_MAGIC);
+				out.writeInt(CACHE_VERSION);
+				out.writeLong(mappings.length());
+				out.writeLong(mappings.lastModified());
+				out.writeInt(classes.size());
+
+				for (Entry<String, ClassDocs> entry : classes.entrySet()) {
+					ClassDocs docs = entry.getValue();
+					writeString(out, entry.getKey());
+
+					out.writeBoolean(docs.doc != null);
+					if (docs.doc != null) writeString(out, docs.doc);
+					writeMembers(out, docs.methods);
+					writeMembers(out, docs.fields);
+				}
 			}
-		} else if (params != null) {//Both method and parameter comments
-			comment = new ArrayList<>(comment);
-			comment.add(""); //Leave space between the method comment and the parameter comment(s)
+
+			Files.move(temp, cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			//Not being able to cache the comments only makes the next decompile slower
+			if (temp != null) temp.toFile().delete();
 		}
+	}
 
-		if (params != null) {
-			params.sort(Comparator.comparingInt(param -> param.getParameter().getLocalVariableIndex()));
+	private static void writeMembers(DataOutput out, Map<String, Map<String, String>> members) throws IOException {
+		int count = 0;
+		for (Map<String, String> descs : members.values()) count += descs.size();
+		out.writeInt(count);
 
-			for (Parameter param : params) {
-				assert method.equals(param.getParameter().getMethod());
-				comment.add(String.format("@param %s %s", param.getParameter().getName(), String.join("\n\t", param.getComments())));
+		for (Entry<String, Map<String, String>> name : members.entrySet()) {
+			for (Entry<String, String> desc : name.getValue().entrySet()) {
+				writeString(out, name.getKey());
+				writeString(out, desc.getKey());
+				writeString(out, desc.getValue());
 			}
 		}
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Hash all the comments which would be given to each top level class, including those for its inner classes and their members.
+	 *
+	 * @return A hash of the comments for each top level class which has any, by name
+	 */
+	public Map<String, Long> hashComments() {
+		Map<String, Long> hashes = new HashMap<>();
+
+		//Summing the hashes makes the result independent of the order the comments are visited in
+		classes.forEach((name, docs) -> {
+			String topLevel = IncrementalDecompile.topLevel(name);
+
+			if (docs.doc != null) hashes.merge(topLevel, hash("class", name, docs.doc), Long::sum);
+			hashMembers(hashes, topLevel, "method", docs.methods);
+			hashMembers(hashes, topLevel, "field", docs.fields);
+		});
+
+		return hashes;
+	}
+
+	private static void hashMembers(Map<String, Long> hashes, String topLevel, String type, Map<String, Map<String, String>> members) {
+		members.forEach((name, descs) -> descs.forEach((desc, doc) -> hashes.merge(topLevel, hash(type, name + desc, doc), Long::sum)));
+	}
+
+	private static long hash(String type, String name, String doc) {
+		return Hashing.murmur3_128().newHasher().putString(type, StandardCharsets.UTF_8).putString(name, StandardCharsets.UTF_8)
+				.putByte((byte) 0).putString(doc, StandardCharsets.UTF_8).hash().asLong();
+	}
 
-		return String.join("\n", comment);
+	@Override
+	public String getClassDoc(StructClass structClass) {
+		ClassDocs docs = classes.get(structClass.qualifiedName);
+		return docs != null ? docs.doc : null;
+	}
+
+	@Override
+	public String getMethodDoc(StructClass structClass, StructMethod structMethod) {
+		ClassDocs docs = classes.get(structClass.qualifiedName);
+		return docs != null ? ClassDocs.get(docs.methods, structMethod.getName(), structMethod.getDescriptor()) : null;
 	}
 
 	@Override
 	public String getFieldDoc(StructClass structClass, StructField structField) {
-		return Optional.ofNullable(fieldComments.get(new EntryTriple(structClass.qualifiedName, structField.getName(), structField.getDescriptor()))).map(comments -> String.join("\n", comments)).orElse(null);
+		ClassDocs docs = classes.get(structClass.qualifiedName);
+		return docs != null ? ClassDocs.get(docs.fields, structField.getName(), structField.getDescriptor()) : null;
 	}
-}
\ No newline at end of file
+}
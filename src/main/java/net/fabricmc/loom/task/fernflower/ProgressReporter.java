@@ -0,0 +1,118 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.task.fernflower;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.fabricmc.loom.task.fernflower.ThreadIDFFLogger.Activity;
+import net.fabricmc.loom.task.fernflower.ThreadIDFFLogger.ThreadState;
+
+/**
+ * Periodically sends what each of the decompiler's threads is doing back to the {@link DecompileProgress} of the task which started it.
+ *
+ * <p>Each snapshot is an {@code int} count of threads which have changed since the last, followed by the {@code long} ID of each,
+ * a {@code boolean} of whether the thread is busy and, if it is, a UTF description of what it is doing.
+ */
+class ProgressReporter implements Closeable {
+	private static final long INTERVAL = 200;
+
+	private final ThreadIDFFLogger logger;
+	private final Socket socket;
+	private final DataOutputStream out;
+	private final Map<Long, Activity> sent = new HashMap<>();
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	ProgressReporter(ThreadIDFFLogger logger, int port) throws IOException {
+		this.logger = logger;
+		socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		thread = new Thread(this::run, "Decompile progress");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void run() {
+		try {
+			while (running) {
+				Thread.sleep(INTERVAL);
+				send();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			//Losing the progress is no reason to stop decompiling
+		}
+	}
+
+	private void send() throws IOException {
+		List<ThreadState> changed = new ArrayList<>();
+
+		for (ThreadState state : logger.getThreads()) {
+			Activity current = state.current;
+
+			if (sent.get(state.id) != current) {
+				sent.put(state.id, current);
+				changed.add(state);
+			}
+		}
+
+		if (changed.isEmpty()) return;
+		out.writeInt(changed.size());
+
+		for (ThreadState state : changed) {
+			Activity current = sent.get(state.id);
+			out.writeLong(state.id);
+			out.writeBoolean(current != null);
+			if (current != null) out.writeUTF(current.toString());
+		}
+
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		thread.interrupt();
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		socket.close();
+	}
+}
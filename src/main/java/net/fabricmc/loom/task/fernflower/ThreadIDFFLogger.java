@@ -25,102 +25,151 @@
 package net.fabricmc.loom.task.fernflower;
 
 import java.io.PrintStream;
-import java.text.MessageFormat;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 
 /**
- * This logger simply prints what each thread is doing
- * to the console in a machine parsable way.
+ * This logger keeps track of what each thread is doing, for a {@link ProgressReporter} to pass on.
+ *
+ * <p>Nothing is formatted as the decompiler works, each thread only records what it has started so that the descriptions
+ * can be made when the progress is next sent. Warnings and errors are still printed straight away.
  *
  * <p>Created by covers1624 on 11/02/19.
  */
 public class ThreadIDFFLogger extends IFernflowerLogger {
+	/** What a thread is doing, which is only described when it is being sent. */
+	static final class Activity {
+		private final String action, subject, member;
+
+		Activity(String action, String subject, String member) {
+			this.action = action;
+			this.subject = subject;
+			this.member = member;
+		}
+
+		@Override
+		public String toString() {
+			if (subject == null) return action;
+			if (member == null) return action + ' ' + subject;
+
+			int split = member.indexOf(' '); //Methods come with their descriptor on the end
+			return action + ' ' + subject + '.' + (split > 0 ? member.substring(0, split) : member);
+		}
+	}
+
+	static final class ThreadState {
+		final long id;
+		final Deque<String> workingClass = new ArrayDeque<>();
+		final Deque<Activity> activities = new ArrayDeque<>();
+		/** The activity at the top of the stack, or {@code null} if the thread is waiting */
+		volatile Activity current;
+
+		ThreadState(long id) {
+			this.id = id;
+		}
+
+		void push(Activity activity) {
+			activities.push(activity);
+			current = activity;
+		}
+
+		void pop() {
+			activities.poll();
+			current = activities.peek();
+		}
+	}
+
 	public final PrintStream stdOut;
 	public final PrintStream stdErr;
 
-	private ThreadLocal<Stack<String>> workingClass = ThreadLocal.withInitial(Stack::new);
-	private ThreadLocal<Stack<String>> line = ThreadLocal.withInitial(Stack::new);
+	private final Map<Long, ThreadState> threads = new ConcurrentHashMap<>();
+	private final ThreadLocal<ThreadState> state = ThreadLocal.withInitial(() -> {
+		ThreadState state = new ThreadState(Thread.currentThread().getId());
+		threads.put(state.id, state);
+		return state;
+	});
 
 	public ThreadIDFFLogger(PrintStream stdOut, PrintStream stdErr) {
 		this.stdOut = stdOut;
 		this.stdErr = stdErr;
 	}
 
+	Collection<ThreadState> getThreads() {
+		return threads.values();
+	}
+
     @Override
     public void writeMessage(String message, Severity severity) {
-    	line.get().push(severity.prefix + message);
-    	print();
+    	switch (severity) {
+    	case WARN:
+    	case ERROR:
+    		stdOut.println(severity.prefix + message);
+    		break;
+
+    	default:
+    		state.get().current = new Activity(message, null, null);
+    	}
     }
 
     @Override
     public void writeMessage(String message, Severity severity, Throwable t) {
-    	String currentClass = workingClass.get().peek();
+    	String currentClass = state.get().workingClass.peek();
     	stdErr.println("Error thrown whilst " + (currentClass == null ? "out of class" : "in " + currentClass));
         stdErr.println(message);
         t.printStackTrace(stdErr);
     }
 
-	private void print() {
-		Thread thread = Thread.currentThread();
-		long id = thread.getId();
-
-		if (line.get().isEmpty()) {
-            stdOut.println(MessageFormat.format("{0} :: waiting", id));
-			return;
-		}
-
-		String line = this.line.get().peek();
-        stdOut.println(MessageFormat.format("{0} :: {1}", id, line).trim());
-	}
-
     @Override
     public void startReadingClass(String className) {
-        workingClass.get().push(className);
-        writeMessage("Reading " + className, Severity.INFO);
+    	ThreadState state = this.state.get();
+    	state.workingClass.push(className);
+    	state.push(new Activity("Reading", className, null));
     }
 
     @Override
     public void startClass(String className) {
-        workingClass.get().push(className);
-        writeMessage("Decompiling " + className, Severity.INFO);
+    	ThreadState state = this.state.get();
+    	state.workingClass.push(className);
+    	state.push(new Activity("Decompiling", className, null));
     }
 
     @Override
     public void startMethod(String methodName) {
-        String className = workingClass.get().peek();
-        writeMessage("Decompiling " + className + '.' + methodName.substring(0, methodName.indexOf(' ')), Severity.INFO);
+    	ThreadState state = this.state.get();
+    	state.push(new Activity("Decompiling", state.workingClass.peek(), methodName));
     }
 
 	@Override
 	public void endMethod() {
-		line.get().pop();
-		print();
+		state.get().pop();
 	}
 
 	@Override
     public void endClass() {
-        line.get().pop();
-        workingClass.get().pop();
-        print();
+		ThreadState state = this.state.get();
+		state.pop();
+		state.workingClass.poll();
     }
 
     @Override
     public void startWriteClass(String className) {
-    	writeMessage("Writing " + className, Severity.INFO);
+    	state.get().push(new Activity("Writing", className, null));
     }
 
 	@Override
 	public void endWriteClass() {
-		line.get().pop();
-		print();
+		state.get().pop();
 	}
 
 	@Override
 	public void endReadingClass() {
-		line.get().pop();
-		workingClass.get().pop();
-		print();
+		ThreadState state = this.state.get();
+		state.pop();
+		state.workingClass.poll();
 	}
 }
@@ -24,11 +24,13 @@
 
 package net.fabricmc.loom.task.fernflower;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -37,15 +39,16 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.function.Supplier;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 
+import net.fabricmc.loom.util.DeflatedZipWriter;
+import net.fabricmc.loom.util.LineNumberRemapper;
+
 /**
  * Created by covers1624 on 18/02/19.
  */
@@ -53,9 +56,9 @@ public class ThreadSafeResultSaver implements IResultSaver {
 	private final Supplier<File> output;
 	private final Supplier<File> lineMapFile;
 
-	public Map<String, ZipOutputStream> outputStreams = new HashMap<>();
+	public Map<String, DeflatedZipWriter> outputStreams = new HashMap<>();
 	public Map<String, ExecutorService> saveExecutors = new HashMap<>();
-	public PrintWriter lineMapWriter;
+	public DataOutputStream lineMapWriter;
 
 	public ThreadSafeResultSaver(Supplier<File> output, Supplier<File> lineMapFile) {
 		this.output = output;
@@ -68,8 +71,14 @@ public class ThreadSafeResultSaver implements IResultSaver {
 		File file = output.get();
 
 		try {
-			FileOutputStream fos = new FileOutputStream(file);
-			ZipOutputStream zos = manifest == null ? new ZipOutputStream(fos) : new JarOutputStream(fos, manifest);
+			DeflatedZipWriter zos = new DeflatedZipWriter(file);
+
+			if (manifest != null) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				manifest.write(bytes);
+				zos.write(DeflatedZipWriter.compress(JarFile.MANIFEST_NAME, bytes.toByteArray()));
+			}
+
 			outputStreams.put(key, zos);
 			saveExecutors.put(key, Executors.newSingleThreadExecutor());
 		} catch (IOException e) {
@@ -78,50 +87,58 @@ public class ThreadSafeResultSaver implements IResultSaver {
 
 		if (lineMapFile.get() != null) {
 			try {
-				lineMapWriter = new PrintWriter(new FileWriter(lineMapFile.get()));
+				lineMapWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(lineMapFile.get())));
+				lineMapWriter.writeInt(LineNumberRemapper.BINARY_MAGIC);
 			} catch (IOException e) {
 				throw new RuntimeException("Unable to create line mapping file: " + lineMapFile.get(), e);
 			}
 		}
-    }
+	}
 
 	@Override
 	public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
 		int[] mapping;
-    	if (qualifiedName != null && DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
+		if (qualifiedName != null && DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
 			mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
-    	} else {
-    		mapping = null;
-    	}
+		} else {
+			mapping = null;
+		}
+
+		//Do the encoding and compressing on the decompiling thread, leaving the writer thread to just append what's done
+		DeflatedZipWriter.Entry entry = DeflatedZipWriter.compress(entryName, content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+
+		byte[] lineMap;
+		if (mapping != null && lineMapWriter != null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(mapping.length * 4 + 64);
+
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				LineNumberRemapper.writeMapping(out, qualifiedName, mapping);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Error writing line mapping for " + qualifiedName, e); //Shouldn't be possible from a ByteArrayOutputStream
+			}
+
+			lineMap = bytes.toByteArray();
+		} else {
+			lineMap = null;
+		}
 
 		String key = path + "/" + archiveName;
 		ExecutorService executor = saveExecutors.get(key);
 		executor.submit(() -> {
-			ZipOutputStream zos = outputStreams.get(key);
+			DeflatedZipWriter zos = outputStreams.get(key);
 
 			try {
-				zos.putNextEntry(new ZipEntry(entryName));
-
-				if (content != null) {
-					zos.write(content.getBytes(StandardCharsets.UTF_8));
-				}
+				zos.write(entry);
 			} catch (IOException e) {
 				DecompilerContext.getLogger().writeMessage("Cannot write entry " + entryName, e);
 			}
 
-			if (mapping != null && lineMapWriter != null) {
-				int maxLine = 0;
-				int maxLineDest = 0;
-				StringBuilder builder = new StringBuilder();
-
-				for (int i = 0; i < mapping.length; i += 2) {
-					maxLine = Math.max(maxLine, mapping[i]);
-					maxLineDest = Math.max(maxLineDest, mapping[i + 1]);
-					builder.append("\t").append(mapping[i]).append("\t").append(mapping[i + 1]).append("\n");
+			if (lineMap != null) {
+				try {
+					lineMapWriter.write(lineMap);
+				} catch (IOException e) {
+					DecompilerContext.getLogger().writeMessage("Cannot write line mapping for " + qualifiedName, e);
 				}
-
-				lineMapWriter.println(qualifiedName + "\t" + maxLine + "\t" + maxLineDest);
-				lineMapWriter.println(builder.toString());
 			}
 		});
 	}
@@ -131,7 +148,7 @@ public class ThreadSafeResultSaver implements IResultSaver {
 		String key = path + "/" + archiveName;
 		ExecutorService executor = saveExecutors.get(key);
 		Future<?> closeFuture = executor.submit(() -> {
-			ZipOutputStream zos = outputStreams.get(key);
+			DeflatedZipWriter zos = outputStreams.get(key);
 
 			try {
 				zos.close();
@@ -151,8 +168,11 @@ public class ThreadSafeResultSaver implements IResultSaver {
 		saveExecutors.remove(key);
 
 		if (lineMapWriter != null) {
-			lineMapWriter.flush();
-			lineMapWriter.close();
+			try {
+				lineMapWriter.close();
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to close line mapping file: " + lineMapFile.get(), e);
+			}
 		}
 	}
 
@@ -0,0 +1,129 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+/**
+ * Keeps the caches which are shared between builds from growing forever. Entries are aged by their modification time, which is
+ * {@link #markUsed(Path) bumped} each time one is reused, so the entries deleted are those which haven't been used for the longest.
+ */
+public final class CacheEviction {
+	private static final Logger log = Logging.getLogger(CacheEviction.class);
+
+	private CacheEviction() {
+	}
+
+	/**
+	 * Note that the given cache entry has just been used, so it is kept over those which haven't been used for longer.
+	 */
+	public static void markUsed(Path entry) {
+		try {
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			//Only means it might be evicted sooner than it would have been
+			log.debug("Unable to mark cache entry as used: " + entry, e);
+		}
+	}
+
+	/**
+	 * Delete all but the given number of most recently used entries.
+	 *
+	 * @param cache The directory the entries are in, or any of its subdirectories
+	 * @param suffix The end of the name of every entry
+	 * @param keep How many entries to keep
+	 * @return The entries which were deleted
+	 * @throws IOException If there is a problem listing the entries
+	 */
+	public static List<Path> keepRecent(Path cache, String suffix, int keep) throws IOException {
+		List<Path> entries = list(cache, suffix);
+		if (entries.size() <= keep) return new ArrayList<>();
+
+		Map<Path, Long> lastUsed = new HashMap<>();
+		for (Path entry : entries) {
+			lastUsed.put(entry, Files.getLastModifiedTime(entry).toMillis());
+		}
+		entries.sort(Comparator.comparing(lastUsed::get, Comparator.reverseOrder()));
+
+		return delete(entries.subList(keep, entries.size()));
+	}
+
+	/**
+	 * Delete every entry which hasn't been used for at least the given time.
+	 *
+	 * @param cache The directory the entries are in, or any of its subdirectories
+	 * @param suffix The end of the name of every entry
+	 * @param maxAge How long in milliseconds an entry can go unused before it is deleted
+	 * @return The entries which were deleted
+	 * @throws IOException If there is a problem listing the entries
+	 */
+	public static List<Path> deleteUnused(Path cache, String suffix, long maxAge) throws IOException {
+		long cutoff = System.currentTimeMillis() - maxAge;
+		List<Path> stale = new ArrayList<>();
+
+		for (Path entry : list(cache, suffix)) {
+			if (Files.getLastModifiedTime(entry).toMillis() < cutoff) stale.add(entry);
+		}
+
+		return delete(stale);
+	}
+
+	private static List<Path> list(Path cache, String suffix) throws IOException {
+		if (!Files.isDirectory(cache)) return new ArrayList<>();
+
+		try (Stream<Path> files = Files.walk(cache)) {
+			return files.filter(path -> Files.isRegularFile(path) && path.getFileName().toString().endsWith(suffix)).collect(Collectors.toList());
+		}
+	}
+
+	private static List<Path> delete(List<Path> entries) {
+		List<Path> deleted = new ArrayList<>();
+
+		for (Path entry : entries) {
+			try {
+				Files.deleteIfExists(entry);
+				deleted.add(entry);
+			} catch (IOException e) {
+				//Probably in use by another build, it can go next time
+				log.debug("Unable to evict cache entry " + entry, e);
+			}
+		}
+
+		return deleted;
+	}
+}
@@ -26,6 +26,9 @@ package net.fabricmc.loom.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
@@ -36,6 +39,18 @@ import org.gradle.api.logging.Logging;
 
 public class Checksum {
 	private static final Logger log = Logging.getLogger(Checksum.class);
+	private static final Map<Path, FileHash> FILE_HASHES = new ConcurrentHashMap<>();
+
+	private static class FileHash {
+		final long size, lastModified;
+		final String hash;
+
+		FileHash(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
 
 	public static boolean equals(File file, String checksum) {
 		if (file == null) {
@@ -45,18 +60,46 @@ public class Checksum {
 		try {
 			@SuppressWarnings("deprecation")
 			HashCode hash = Files.asByteSource(file).hash(Hashing.sha1());
-			StringBuilder builder = new StringBuilder();
+			String hex = toHex(hash.asBytes());
 
-			for (Byte hashBytes : hash.asBytes()) {
-				builder.append(Integer.toString((hashBytes & 0xFF) + 0x100, 16).substring(1));
-			}
-
-			log.debug("Checksum check: '" + builder.toString() + "' == '" + checksum + "'?");
-			return builder.toString().equals(checksum);
+			log.debug("Checksum check: '" + hex + "' == '" + checksum + "'?");
+			return hex.equals(checksum);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 
 		return false;
 	}
+
+	/**
+	 * Get the SHA-256 of the given file's contents, only reading them again if the file has changed since it was last hashed.
+	 *
+	 * @param file The file to hash
+	 * @return The hex hash of the file's contents
+	 * @throws IOException If there is a problem reading the file
+	 */
+	public static String sha256(File file) throws IOException {
+		Path path = file.getAbsoluteFile().toPath();
+		long size = file.length();
+		long lastModified = file.lastModified();
+
+		FileHash known = FILE_HASHES.get(path);
+		if (known != null && known.size == size && known.lastModified == lastModified) {
+			return known.hash;
+		}
+
+		String hash = Files.asByteSource(file).hash(Hashing.sha256()).toString();
+		FILE_HASHES.put(path, new FileHash(size, lastModified, hash));
+		return hash;
+	}
+
+	public static String toHex(byte[] hash) {
+		StringBuilder builder = new StringBuilder(hash.length * 2);
+
+		for (byte hashByte : hash) {
+			builder.append(Integer.toString((hashByte & 0xFF) + 0x100, 16).substring(1));
+		}
+
+		return builder.toString();
+	}
 }
@@ -0,0 +1,173 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.Project;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import net.fabricmc.loom.LoomGradleExtension;
+
+/**
+ * TinyRemapper only needs the class hierarchy and member signatures from its class path, but has to read through every method body
+ * in every jar to get them. This strips the stable part of a class path (Minecraft, its libraries and anything else in a Gradle or Loom
+ * cache) down to just that, producing a single far smaller jar which is kept in the user cache for every remapper given the same jars.
+ * Only the most recently used few snapshots are kept, as any change to the jars (such as a mappings update) makes a new one.
+ */
+public class ClassPathSnapshot {
+	/** Bumped whenever what goes into a snapshot changes */
+	private static final int FORMAT = 1;
+	/** How many snapshots are kept in the user cache before the least recently used are deleted */
+	private static final int MAX_SNAPSHOTS = 8;
+	private static final Map<String, Path> KNOWN = new ConcurrentHashMap<>();
+
+	/**
+	 * Swap the stable jars in the given class path for a snapshot of them, building it if it doesn't already exist.
+	 *
+	 * @param project The project the class path is for
+	 * @param classPath The jars and directories which make up the class path, in priority order
+	 * @return The class path to give to the remapper, with the snapshot in place of the first jar it includes
+	 * @throws IOException If there is a problem reading the class path or writing the snapshot
+	 */
+	public static Path[] of(Project project, Path... classPath) throws IOException {
+		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
+		Path gradleHome = project.getGradle().getGradleUserHomeDir().toPath().toAbsolutePath();
+		Path loomCache = extension.getRootProjectPersistentCache().toPath().toAbsolutePath();
+
+		List<Path> stable = new ArrayList<>();
+		List<Path> remaining = new ArrayList<>();
+		int snapshotIndex = -1;
+		for (Path path : classPath) {
+			Path absolute = path.toAbsolutePath();
+
+			if (Files.isRegularFile(absolute) && (absolute.startsWith(gradleHome) || absolute.startsWith(loomCache))) {
+				if (stable.isEmpty()) snapshotIndex = remaining.size();
+				stable.add(absolute);
+			} else {
+				remaining.add(path);
+			}
+		}
+
+		//Not worth making a snapshot to save reading a single jar
+		if (stable.size() < 2) return classPath;
+
+		Hasher hasher = Hashing.sha256().newHasher().putInt(FORMAT);
+		for (Path path : stable) {
+			hasher.putString(path.toString(), StandardCharsets.UTF_8).putLong(Files.size(path)).putLong(Files.getLastModifiedTime(path).toMillis());
+		}
+		String key = hasher.hash().toString();
+
+		Path snapshot = KNOWN.get(key);
+		if (snapshot == null || !Files.exists(snapshot)) {
+			snapshot = extension.getUserCache().toPath().resolve("classpath_snapshots").resolve(key + ".jar");
+
+			if (!Files.exists(snapshot)) {
+				project.getLogger().info("Building class path snapshot of " + stable.size() + " jars");
+				write(stable, snapshot);
+				//Each new set of jars (such as different mods or mappings) makes a new snapshot, which would otherwise be kept forever
+				KNOWN.values().removeAll(CacheEviction.keepRecent(snapshot.getParent(), ".jar", MAX_SNAPSHOTS));
+			} else {
+				CacheEviction.markUsed(snapshot);
+			}
+
+			KNOWN.put(key, snapshot);
+		}
+
+		remaining.add(snapshotIndex, snapshot);
+		return remaining.toArray(new Path[0]);
+	}
+
+	private static void write(List<Path> jars, Path snapshot) throws IOException {
+		Files.createDirectories(snapshot.getParent());
+		Path temp = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".part");
+
+		try {
+			try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				Set<String> seen = new HashSet<>();
+
+				for (Path jar : jars) {
+					try (ZipFile zip = new ZipFile(jar.toFile())) {
+						for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+							ZipEntry entry = it.nextElement();
+							String name = entry.getName();
+
+							//Earlier jars take priority, just as they would on the class path itself
+							if (entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/") || !seen.add(name)) continue;
+
+							try (InputStream in = zip.getInputStream(entry)) {
+								out.putNextEntry(new ZipEntry(name));
+								out.write(stripCode(new ClassReader(in)));
+								out.closeEntry();
+							}
+						}
+					}
+				}
+			}
+
+			try {
+				Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Rewrite the given class keeping only its and its members' names, descriptors, access and annotations, dropping all the code.
+	 * The result only depends on what is kept, so two classes which differ only in their method bodies will give the same bytes.
+	 *
+	 * @param reader The class to be stripped
+	 * @return The stripped class
+	 */
+	public static byte[] stripCode(ClassReader reader) {
+		ClassWriter writer = new ClassWriter(0);
+		reader.accept(writer, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return writer.toByteArray();
+	}
+
+}
@@ -0,0 +1,295 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * A zip writer which only appends entries which have already been compressed, so the compression can be done on whichever thread produced the entry,
+ * or which came already compressed from another zip.
+ * Entries are written with their sizes and CRC up front, which {@link java.util.zip.ZipOutputStream} can't do without compressing everything itself.
+ */
+public class DeflatedZipWriter implements Closeable {
+	/** An entry which has been compressed ready to be written */
+	public static final class Entry {
+		final byte[] name;
+		final byte[] data;
+		final long crc;
+		final int size;
+		final int method;
+
+		private Entry(byte[] name, byte[] data, long crc, int size, int method) {
+			this.name = name;
+			this.data = data;
+			this.crc = crc;
+			this.size = size;
+			this.method = method;
+		}
+	}
+
+	private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	private static final int LOCAL_HEADER = 0x04034B50, CENTRAL_HEADER = 0x02014B50, END_OF_CENTRAL = 0x06054B50;
+	private static final int VERSION = 20, UTF8_FLAG = 0x800, STORED = 0, DEFLATED = 8;
+	/** The charset names are in when an entry doesn't have the {@link #UTF8_FLAG} set */
+	private static final Charset LEGACY_NAMES = Charset.forName("IBM437");
+
+	private final OutputStream out;
+	private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+	private final Set<String> names = new HashSet<>();
+	private final int time, date;
+	private long offset;
+	private int entries;
+
+	public DeflatedZipWriter(File file) throws IOException {
+		out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+
+		Calendar now = Calendar.getInstance();
+		time = now.get(Calendar.HOUR_OF_DAY) << 11 | now.get(Calendar.MINUTE) << 5 | now.get(Calendar.SECOND) >> 1;
+		date = now.get(Calendar.YEAR) - 1980 << 9 | now.get(Calendar.MONTH) + 1 << 5 | now.get(Calendar.DAY_OF_MONTH);
+	}
+
+	/**
+	 * Compress the given contents using a {@link Deflater} kept for the calling thread.
+	 *
+	 * @param name The name of the entry
+	 * @param contents The uncompressed contents of the entry
+	 * @return The compressed entry, ready to be {@link #write(Entry) written}
+	 */
+	public static Entry compress(String name, byte[] contents) {
+		CRC32 crc = new CRC32();
+		crc.update(contents, 0, contents.length);
+
+		Deflater deflater = DEFLATERS.get();
+		deflater.reset();
+		deflater.setInput(contents);
+		deflater.finish();
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(contents.length / 4, 64));
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			int length = deflater.deflate(buffer);
+			compressed.write(buffer, 0, length);
+		}
+
+		return new Entry(name.getBytes(StandardCharsets.UTF_8), compressed.toByteArray(), crc.getValue(), contents.length, DEFLATED);
+	}
+
+	/**
+	 * Copy the entries of the given zip whose names match the filter to the end of this one, without decompressing them.
+	 * Any entries which can't be copied as they are, such as ZIP64 ones, are decompressed and compressed again instead.
+	 * Names are always written as UTF-8, including those which were originally in the legacy IBM437 charset.
+	 *
+	 * @param zip The zip to copy entries from
+	 * @param filter Which entries to copy, directories are always left out
+	 * @throws IOException If an entry is a duplicate, the given file is not a zip, or there is a problem reading or writing
+	 */
+	public void copyRaw(File zip, Predicate<String> filter) throws IOException {
+		ZipFile fallback = null;
+
+		try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer end = findEndOfCentral(channel);
+			if (end == null) throw new ZipException("Unable to find the end of the central directory in " + zip);
+
+			int count = end.getShort(10) & 0xFFFF;
+			long centralOffset = end.getInt(16) & 0xFFFFFFFFL;
+			ByteBuffer central = null;
+
+			if (count != 0xFFFF && centralOffset != 0xFFFFFFFFL) {//Otherwise it is ZIP64
+				central = ByteBuffer.allocate(end.getInt(12)).order(ByteOrder.LITTLE_ENDIAN);
+				readFully(channel, central, centralOffset);
+			}
+
+			for (int i = 0, pos = 0; central != null && i < count; i++) {
+				if (central.getInt(pos) != CENTRAL_HEADER) throw new ZipException("Corrupt central directory in " + zip);
+
+				int flags = central.getShort(pos + 8);
+				int method = central.getShort(pos + 10) & 0xFFFF;
+				long crc = central.getInt(pos + 16) & 0xFFFFFFFFL;
+				long compressedSize = central.getInt(pos + 20) & 0xFFFFFFFFL;
+				long size = central.getInt(pos + 24) & 0xFFFFFFFFL;
+				int nameLength = central.getShort(pos + 28) & 0xFFFF;
+				int skip = nameLength + (central.getShort(pos + 30) & 0xFFFF) + (central.getShort(pos + 32) & 0xFFFF);
+				long localOffset = central.getInt(pos + 42) & 0xFFFFFFFFL;
+				String name = new String(central.array(), pos + 46, nameLength, (flags & UTF8_FLAG) != 0 ? StandardCharsets.UTF_8 : LEGACY_NAMES);
+				pos += 46 + skip;
+
+				if (name.endsWith("/") || !filter.test(name)) continue;
+
+				if ((method != STORED && method != DEFLATED) || (flags & 1) != 0 || compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+					//Encrypted, ZIP64 or compressed some other way, none of which can be copied as it is
+					if (fallback == null) fallback = new ZipFile(zip, LEGACY_NAMES);
+					write(compress(name, ByteStreams.toByteArray(fallback.getInputStream(fallback.getEntry(name)))));
+					continue;
+				}
+
+				ByteBuffer local = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+				readFully(channel, local, localOffset);
+				if (local.getInt(0) != LOCAL_HEADER) throw new ZipException("Corrupt local header for " + name + " in " + zip);
+
+				byte[] data = new byte[(int) compressedSize];
+				readFully(channel, ByteBuffer.wrap(data), localOffset + 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF));
+				write(new Entry(name.getBytes(StandardCharsets.UTF_8), data, crc, (int) size, method));
+			}
+
+			if (central == null) {
+				try (ZipFile in = new ZipFile(zip, LEGACY_NAMES)) {
+					for (Enumeration<? extends ZipEntry> it = in.entries(); it.hasMoreElements();) {
+						ZipEntry entry = it.nextElement();
+						if (entry.isDirectory() || !filter.test(entry.getName())) continue;
+
+						try (InputStream stream = in.getInputStream(entry)) {
+							write(compress(entry.getName(), ByteStreams.toByteArray(stream)));
+						}
+					}
+				}
+			}
+		} finally {
+			if (fallback != null) fallback.close();
+		}
+	}
+
+	private static ByteBuffer findEndOfCentral(FileChannel channel) throws IOException {
+		int length = (int) Math.min(channel.size(), 22 + 0xFFFF); //The record's size plus the longest possible comment
+		ByteBuffer tail = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, tail, channel.size() - length);
+
+		for (int pos = length - 22; pos >= 0; pos--) {
+			if (tail.getInt(pos) == END_OF_CENTRAL) {
+				tail.position(pos);
+				return tail.slice().order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+
+		return null;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+		}
+	}
+
+	/**
+	 * Append the given entry to the end of the zip.
+	 *
+	 * @param entry The compressed entry to write
+	 * @throws IOException If the entry is a duplicate, the zip would need to be ZIP64, or there is a problem writing
+	 */
+	public void write(Entry entry) throws IOException {
+		if (!names.add(new String(entry.name, StandardCharsets.UTF_8))) {
+			throw new ZipException("duplicate entry: " + new String(entry.name, StandardCharsets.UTF_8));
+		}
+		if (entries == 0xFFFF || offset + entry.data.length > 0xFFFFFFFFL) {
+			throw new ZipException("Too many or too large entries for a zip without ZIP64");
+		}
+
+		writeInt(out, LOCAL_HEADER);
+		writeShort(out, VERSION);
+		writeCommon(out, entry);
+		writeShort(out, 0); //Extra length
+		out.write(entry.name);
+		out.write(entry.data);
+
+		writeInt(central, CENTRAL_HEADER);
+		writeShort(central, VERSION); //Made by
+		writeShort(central, VERSION); //Needed to extract
+		writeCommon(central, entry);
+		writeShort(central, 0); //Extra length
+		writeShort(central, 0); //Comment length
+		writeShort(central, 0); //Disk number
+		writeShort(central, 0); //Internal attributes
+		writeInt(central, 0); //External attributes
+		writeInt(central, (int) offset);
+		central.write(entry.name);
+
+		offset += 30 + entry.name.length + entry.data.length;
+		entries++;
+	}
+
+	private void writeCommon(OutputStream to, Entry entry) throws IOException {
+		writeShort(to, UTF8_FLAG);
+		writeShort(to, entry.method);
+		writeShort(to, time);
+		writeShort(to, date);
+		writeInt(to, (int) entry.crc);
+		writeInt(to, entry.data.length);
+		writeInt(to, entry.size);
+		writeShort(to, entry.name.length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			central.writeTo(out);
+
+			writeInt(out, END_OF_CENTRAL);
+			writeShort(out, 0); //This disk
+			writeShort(out, 0); //Disk with the central directory
+			writeShort(out, entries);
+			writeShort(out, entries);
+			writeInt(out, central.size());
+			writeInt(out, (int) offset);
+			writeShort(out, 0); //Comment length
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void writeShort(OutputStream out, int value) throws IOException {
+		out.write(value & 0xFF);
+		out.write(value >>> 8 & 0xFF);
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		writeShort(out, value & 0xFFFF);
+		writeShort(out, value >>> 16);
+	}
+}
@@ -24,6 +24,7 @@
 
 package net.fabricmc.loom.util;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.Project;
@@ -35,9 +36,20 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.zip.GZIPInputStream;
 
 public class DownloadUtil {
+	/** How long to wait in milliseconds for a connection to be made, or for more data to arrive, before giving up */
+	private static final int CONNECT_TIMEOUT = 30_000, READ_TIMEOUT = 60_000;
+	/** The largest response body which will be read just so the connection can be reused rather than closed */
+	private static final long MAX_DRAIN = 64 * 1024;
+
 	/**
 	 * Download from the given {@link URL} to the given {@link File} so long as there are differences between them.
 	 *
@@ -60,7 +72,28 @@ public class DownloadUtil {
 	 * @throws IOException If an exception occurs during the process
 	 */
 	public static void downloadIfChanged(URL from, File to, Logger logger, boolean quiet) throws IOException {
+		downloadIfChanged(from, to, null, logger, quiet);
+	}
+
+	/**
+	 * Download from the given {@link URL} to the given {@link File} so long as there are differences between them.
+	 * The contents are streamed into a temporary file next to the destination and only moved into place once complete,
+	 * so an interrupted or corrupt download never replaces what was there before.
+	 *
+	 * <p>If an expected SHA-1 is given the download is hashed as it is written, and rejected without being moved into
+	 * place if it doesn't match. A destination which the server reports as unchanged is left as is without being hashed.
+	 *
+	 * @param from The URL of the file to be downloaded
+	 * @param to The destination to be saved to, and compared against if it exists
+	 * @param expectedSha1 The hex SHA-1 hash the downloaded contents must match, or <code>null</code> to accept anything
+	 * @param logger The logger to print information to, typically from {@link Project#getLogger()}
+	 * @param quiet Whether to only print warnings (when <code>true</code>) or everything
+	 * @throws IOException If an exception occurs during the process, or the downloaded contents have the wrong hash
+	 */
+	public static void downloadIfChanged(URL from, File to, String expectedSha1, Logger logger, boolean quiet) throws IOException {
 		HttpURLConnection connection = (HttpURLConnection) from.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
 
 		//If the output already exists we'll use it's last modified time
 		if (to.exists()) {
@@ -87,7 +120,9 @@ public class DownloadUtil {
 
 		if ((code < 200 || code > 299) && code != HttpURLConnection.HTTP_NOT_MODIFIED) {
 			//Didn't get what we expected
-			throw new IOException(connection.getResponseMessage() + " for " + from);
+			String message = connection.getResponseMessage();
+			release(connection, code);
+			throw new IOException(message + " for " + from);
 		}
 
 		long modifyTime = connection.getHeaderFieldDate("Last-Modified", -1);
@@ -97,6 +132,7 @@ public class DownloadUtil {
 				logger.info("'{}' Not Modified, skipping.", to);
 			}
 
+			release(connection, code);
 			return; //What we've got is already fine
 		}
 
@@ -106,7 +142,11 @@ public class DownloadUtil {
 			logger.info("'{}' Changed, downloading {}", to, toNiceSize(contentLength));
 		}
 
-		try { //Try download to the output
+		File parent = to.getAbsoluteFile().getParentFile();
+		FileUtils.forceMkdir(parent);
+		File temp = File.createTempFile(to.getName(), ".part", parent);
+
+		try { //Try download to the temporary file first
 			InputStream inputStream = connection.getInputStream();
 			String encoding = connection.getContentEncoding();
 			if (encoding != null) {
@@ -114,9 +154,25 @@ public class DownloadUtil {
 					inputStream = new GZIPInputStream(inputStream);
 				}
 			}
-			FileUtils.copyInputStreamToFile(inputStream, to);
+
+			//Hash what is being written rather than reading it all back again afterwards
+			MessageDigest digest = expectedSha1 != null ? sha1() : null;
+			if (digest != null) inputStream = new DigestInputStream(inputStream, digest);
+
+			FileUtils.copyInputStreamToFile(inputStream, temp);
+
+			if (digest != null) {
+				String hash = Checksum.toHex(digest.digest());
+
+				if (!hash.equalsIgnoreCase(expectedSha1)) {
+					throw new IOException("Downloaded " + from + " with hash " + hash + " but expected " + expectedSha1);
+				}
+			}
+
+			moveIntoPlace(temp.toPath(), to.toPath());
 		} catch (IOException e) {
-			to.delete(); //Probably isn't good if it fails to copy/save
+			temp.delete(); //Probably isn't good if it fails to copy/save
+			connection.disconnect(); //Whatever is left of the response can't be trusted to be read cleanly
 			throw e;
 		}
 
@@ -138,6 +194,56 @@ public class DownloadUtil {
 		}
 	}
 
+	/**
+	 * Finish with a response whose body isn't wanted. A short body is read through and closed so the connection can go back into
+	 * the keep-alive pool for the next request, whilst a long one is cut off rather than downloaded for nothing.
+	 *
+	 * @param connection The connection the response came from
+	 * @param code The response's status code
+	 */
+	private static void release(HttpURLConnection connection, int code) {
+		long length = connection.getContentLengthLong();
+
+		if (code != HttpURLConnection.HTTP_NOT_MODIFIED && (length < 0 || length > MAX_DRAIN)) {
+			connection.disconnect();
+			return;
+		}
+
+		try (InputStream in = code >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+			if (in != null) ByteStreams.exhaust(in);
+		} catch (IOException e) {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Create a new SHA-1 {@link MessageDigest}, which every Java platform is required to support.
+	 *
+	 * @return A fresh SHA-1 digest
+	 */
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Missing SHA-1 digest?", e);
+		}
+	}
+
+	/**
+	 * Move the given completed download over the destination, atomically if the file system supports it.
+	 *
+	 * @param from The completed temporary file
+	 * @param to The destination to replace
+	 * @throws IOException If the file cannot be moved
+	 */
+	private static void moveIntoPlace(Path from, Path to) throws IOException {
+		try {
+			java.nio.file.Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			java.nio.file.Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
 	/**
 	 * Creates a new file in the same directory as the given file with <code>.etag</code> on the end of the name.
 	 *
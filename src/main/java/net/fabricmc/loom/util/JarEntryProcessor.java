@@ -0,0 +1,136 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.io.ByteStreams;
+
+import net.fabricmc.tinyremapper.OutputConsumerPath;
+
+/**
+ * A transformation of the non-class entries in a jar, applied whilst the remapped jar is being written so it never needs rewriting afterwards.
+ */
+public interface JarEntryProcessor {
+	/**
+	 * Whether the given entry might need processing.
+	 *
+	 * @param name The name of the entry in the jar
+	 * @return Whether to pass the entry's contents to {@link #process(String, byte[])}
+	 */
+	boolean processes(String name);
+
+	/**
+	 * Transform the given entry.
+	 *
+	 * @param name The name of the entry in the jar
+	 * @param contents The current contents of the entry
+	 * @return The new contents of the entry, or <code>null</code> to leave it as it is
+	 * @throws IOException If there is a problem transforming the entry
+	 */
+	byte[] process(String name, byte[] contents) throws IOException;
+
+	/**
+	 * Any extra entries which should be added to the jar.
+	 *
+	 * @return The files to add, by the name they should have in the jar
+	 */
+	default Map<String, Path> extraEntries() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * Run the given processors over the non-class entries of the given input, adding the results to the given output.
+	 * This is expected to be called after {@link OutputConsumerPath#addNonClassFiles}, so the processed entries replace the copied ones.
+	 *
+	 * @param input The jar whose entries are to be processed
+	 * @param output The output the processed entries are to be written to
+	 * @param tempDir A directory to stage processed entries in, which is left as it was found
+	 * @param processors The processors to run, in the order they should be applied
+	 * @return Whether any entries were changed or added
+	 * @throws IOException If there is a problem reading, processing or writing the entries
+	 */
+	static boolean apply(Path input, OutputConsumerPath output, Path tempDir, List<JarEntryProcessor> processors) throws IOException {
+		if (processors.isEmpty()) return false;
+		boolean changed = false;
+		int staged = 0;
+		Path stagingDir = null;
+
+		try (ZipFile zip = new ZipFile(input.toFile())) {
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+				ZipEntry entry = it.nextElement();
+				String name = entry.getName();
+				if (entry.isDirectory() || name.endsWith(".class") || processors.stream().noneMatch(processor -> processor.processes(name))) continue;
+
+				byte[] contents;
+				try (InputStream in = zip.getInputStream(entry)) {
+					contents = ByteStreams.toByteArray(in);
+				}
+
+				boolean processed = false;
+				for (JarEntryProcessor processor : processors) {
+					if (!processor.processes(name)) continue;
+
+					byte[] result = processor.process(name, contents);
+					if (result != null) {
+						contents = result;
+						processed = true;
+					}
+				}
+
+				if (processed) {
+					if (stagingDir == null) stagingDir = Files.createTempDirectory(tempDir, "entries");
+
+					Path file = stagingDir.resolve("entry-" + staged++);
+					Files.write(file, contents);
+					output.addNonClassFile(file, name); //Copied into the output straight away, so the staged file isn't needed after
+					Files.delete(file);
+					changed = true;
+				}
+			}
+		} finally {
+			if (stagingDir != null) Files.walkFileTree(stagingDir, new DeletingFileVisitor());
+		}
+
+		for (JarEntryProcessor processor : processors) {
+			for (Entry<String, Path> entry : processor.extraEntries().entrySet()) {
+				output.addNonClassFile(entry.getValue(), entry.getKey());
+				changed = true;
+			}
+		}
+
+		return changed;
+	}
+}
@@ -26,19 +26,33 @@ package net.fabricmc.loom.util;
 
 import static java.text.MessageFormat.format;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -54,9 +68,89 @@ import net.fabricmc.loom.util.progress.ProgressLogger;
  * Created by covers1624 on 18/02/19.
  */
 public class LineNumberRemapper {
+	/** Marks a line map written in the binary format from {@link #writeMapping(DataOutput, String, int[])}, rather than as text */
+	public static final int BINARY_MAGIC = 0x4C4E4D50; //LNMP
 	private final Map<String, RClass> lineMap = new HashMap<>();
 
+	/**
+	 * Write the given line mapping for the given class in the binary line map format.
+	 *
+	 * @param out The output to write to, which is expected to start with {@link #BINARY_MAGIC}
+	 * @param className The name of the class the mapping is for
+	 * @param mapping The original and decompiled line numbers in pairs
+	 * @throws IOException If there is a problem writing the mapping
+	 */
+	public static void writeMapping(DataOutput out, String className, int[] mapping) throws IOException {
+		int maxLine = 0;
+		int maxLineDest = 0;
+
+		for (int i = 0; i < mapping.length; i += 2) {
+			maxLine = Math.max(maxLine, mapping[i]);
+			maxLineDest = Math.max(maxLineDest, mapping[i + 1]);
+		}
+
+		out.writeUTF(className);
+		out.writeInt(maxLine);
+		out.writeInt(maxLineDest);
+		out.writeInt(mapping.length / 2);
+
+		for (int i = 0; i < mapping.length; i += 2) {
+			out.writeInt(mapping[i]);
+			out.writeInt(mapping[i + 1]);
+		}
+	}
+
+	/**
+	 * Copy the mappings for the classes matching the given filter from a binary line map to another.
+	 *
+	 * @param from The binary line map to copy from, which can't be in the text format
+	 * @param to The output to copy the mappings to, which is expected to already start with {@link #BINARY_MAGIC}
+	 * @param filter Which classes to copy the mappings of
+	 * @throws IOException If there is a problem reading or writing the mappings, or the given file isn't a binary line map
+	 */
+	public static void copyMappings(File from, DataOutput to, Predicate<String> filter) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(from)))) {
+			if (in.readInt() != BINARY_MAGIC) throw new IOException("Not a binary line map: " + from);
+
+			while (true) {
+				String name;
+				try {
+					name = in.readUTF();
+				} catch (EOFException e) {
+					break; //Reached the end of the mappings
+				}
+
+				int maxLine = in.readInt();
+				int maxLineDest = in.readInt();
+				int[] pairs = new int[in.readInt() * 2];
+				for (int i = 0; i < pairs.length; i++) {
+					pairs[i] = in.readInt();
+				}
+
+				if (filter.test(name)) {
+					to.writeUTF(name);
+					to.writeInt(maxLine);
+					to.writeInt(maxLineDest);
+					to.writeInt(pairs.length / 2);
+
+					for (int pair : pairs) {
+						to.writeInt(pair);
+					}
+				}
+			}
+		}
+	}
+
 	public void readMappings(File lineMappings) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(lineMappings)))) {
+			if (lineMappings.length() >= 4 && in.readInt() == BINARY_MAGIC) {
+				readBinaryMappings(in);
+				return;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Exception reading LineMappings file.", e);
+		}
+
 		try (BufferedReader reader = new BufferedReader(new FileReader(lineMappings))) {
 			RClass clazz = null;
 			String line = null;
@@ -75,7 +169,7 @@ public class LineNumberRemapper {
 						clazz.maxLine = Integer.parseInt(segs[1]);
 						clazz.maxLineDest = Integer.parseInt(segs[2]);
 					} else {
-						clazz.lineMap.put(Integer.parseInt(segs[0]), Integer.parseInt(segs[1]));
+						clazz.put(Integer.parseInt(segs[0]), Integer.parseInt(segs[1]));
 					}
 
 					i++;
@@ -88,11 +182,70 @@ public class LineNumberRemapper {
 		}
 	}
 
+	private void readBinaryMappings(DataInputStream in) throws IOException {
+		int classes = 0;
+
+		try {
+			while (true) {
+				String name;
+				try {
+					name = in.readUTF();
+				} catch (EOFException e) {
+					break; //Reached the end of the mappings
+				}
+
+				RClass clazz = lineMap.computeIfAbsent(name, RClass::new);
+				clazz.maxLine = in.readInt();
+				clazz.maxLineDest = in.readInt();
+
+				for (int i = 0, pairs = in.readInt(); i < pairs; i++) {
+					clazz.put(in.readInt(), in.readInt());
+				}
+
+				classes++;
+			}
+		} catch (EOFException e) {
+			throw new IOException(format("Truncated line mappings after {0} classes", classes), e);
+		}
+	}
+
 	public void process(ProgressLogger logger, Path input, Path output) throws IOException {
+		process(logger, input, output, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Remap the line numbers of every class in the input, copying everything else as it is.
+	 *
+	 * <p>Classes are read and remapped on a pool of the given number of threads, whilst the results are written out in
+	 * the order they were found. Only a few classes per thread are held in memory at once.
+	 */
+	public void process(ProgressLogger logger, Path input, Path output, int threads) throws IOException {
+		lineMap.values().forEach(RClass::build);
+
+		List<Path> files = new ArrayList<>();
 		Files.walkFileTree(input, new SimpleFileVisitor<Path>() {
 			@Override
 			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				files.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory("Loom Line Remapper"));
+		Deque<Future<byte[]>> pending = new ArrayDeque<>();
+		int window = Math.max(1, threads) * 4;
+
+		try {
+			for (int next = 0, written = 0; written < files.size();) {
+				while (next < files.size() && pending.size() < window) {
+					Path file = files.get(next++);
+					pending.add(pool.submit(() -> remap(input.relativize(file).toString(), file)));
+				}
+
+				Path file = files.get(written++);
 				String rel = input.relativize(file).toString();
+				byte[] contents = pending.remove().get();
+
 				Path dst = output.resolve(rel);
 				Path parent = dst.getParent();
 
@@ -100,41 +253,50 @@ public class LineNumberRemapper {
 					Files.createDirectories(parent);
 				}
 
-				String fName = file.getFileName().toString();
-
-				if (fName.endsWith(".class")) {
-					if (Files.exists(dst)) {
-						Files.delete(dst);
+				if (contents != null) {
+					if (logger != null) {
+						logger.progress("Remapping " + rel.substring(0, rel.length() - 6));
 					}
 
-					String idx = rel.substring(0, rel.length() - 6);
+					Files.write(dst, contents);
+				} else {
+					Files.copy(file, dst, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted remapping line numbers", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException("Error remapping line numbers", cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
 
-					if (logger != null) {
-						logger.progress("Remapping " + idx);
-					}
+	/**
+	 * @return The remapped class, or {@code null} if the file should be copied as it is
+	 */
+	private byte[] remap(String rel, Path file) throws IOException {
+		if (!rel.endsWith(".class")) return null;
 
-					int dollarPos = idx.indexOf('$'); //This makes the assumption that only Java classes are to be remapped.
+		String idx = rel.substring(0, rel.length() - 6);
+		int dollarPos = idx.indexOf('$'); //This makes the assumption that only Java classes are to be remapped.
 
-					if (dollarPos >= 0) {
-						idx = idx.substring(0, dollarPos);
-					}
+		if (dollarPos >= 0) {
+			idx = idx.substring(0, dollarPos);
+		}
 
-					if (lineMap.containsKey(idx)) {
-						try (InputStream is = Files.newInputStream(file)) {
-							ClassReader reader = new ClassReader(is);
-							ClassWriter writer = new ClassWriter(0);
+		RClass rClass = lineMap.get(idx);
+		if (rClass == null) return null;
 
-							reader.accept(new LineNumberVisitor(Opcodes.ASM7, writer, lineMap.get(idx)), 0);
-							Files.write(dst, writer.toByteArray());
-						}
-					}
-				} else {
-					Files.copy(file, dst, StandardCopyOption.REPLACE_EXISTING);
-				}
+		ClassReader reader = new ClassReader(Files.readAllBytes(file));
+		ClassWriter writer = new ClassWriter(0);
 
-				return FileVisitResult.CONTINUE;
-			}
-		});
+		reader.accept(new LineNumberVisitor(Opcodes.ASM7, writer, rClass), 0);
+		return writer.toByteArray();
 	}
 
 	private static class LineNumberVisitor extends ClassVisitor {
@@ -157,13 +319,7 @@ public class LineNumberRemapper {
 					} else if (tLine >= rClass.maxLine) {
 						super.visitLineNumber(rClass.maxLineDest, start);
 					} else {
-						Integer matchedLine = null;
-
-						while (tLine <= rClass.maxLine && (matchedLine = rClass.lineMap.get(tLine)) == null) {
-							tLine++;
-						}
-
-						super.visitLineNumber(matchedLine != null ? matchedLine : rClass.maxLineDest, start);
+						super.visitLineNumber(rClass.find(tLine), start);
 					}
 				}
 			};
@@ -175,10 +331,66 @@ public class LineNumberRemapper {
 		private final String name;
 		private int maxLine;
 		private int maxLineDest;
-		private final Map<Integer, Integer> lineMap = new HashMap<>();
+		/** The original and decompiled line numbers in pairs, as they were read */
+		private int[] pairs = new int[16];
+		private int pairCount;
+		/** The original lines with a mapping in ascending order, with the matching decompiled lines */
+		private int[] lines, destinations;
 
 		private RClass(String name) {
 			this.name = name;
 		}
+
+		void put(int line, int destination) {
+			if (pairCount * 2 == pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+
+			pairs[pairCount * 2] = line;
+			pairs[pairCount * 2 + 1] = destination;
+			pairCount++;
+		}
+
+		/**
+		 * Sort the mappings into a table which can be searched, the last mapping for a line wins if there is more than one.
+		 */
+		void build() {
+			if (lines != null) return;
+
+			//Sort on the line, then the order the mappings were read in
+			long[] order = new long[pairCount];
+			for (int i = 0; i < pairCount; i++) {
+				order[i] = (long) pairs[i * 2] << 32 | i;
+			}
+			Arrays.sort(order);
+
+			int[] lines = new int[pairCount];
+			int[] destinations = new int[pairCount];
+			int size = 0;
+
+			for (int i = 0; i < pairCount; i++) {
+				int index = (int) order[i];
+				int line = pairs[index * 2];
+
+				if (size > 0 && lines[size - 1] == line) {
+					destinations[size - 1] = pairs[index * 2 + 1];
+				} else {
+					lines[size] = line;
+					destinations[size++] = pairs[index * 2 + 1];
+				}
+			}
+
+			this.lines = Arrays.copyOf(lines, size);
+			this.destinations = Arrays.copyOf(destinations, size);
+			pairs = null;
+		}
+
+		/**
+		 * Find the decompiled line for the first mapped line at or after the given one.
+		 */
+		int find(int line) {
+			int index = Arrays.binarySearch(lines, line);
+			if (index < 0) index = -(index + 1);
+
+			return index < lines.length ? destinations[index] : maxLineDest;
+		}
 	}
 }
@@ -25,9 +25,7 @@
 package net.fabricmc.loom.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,6 +35,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
@@ -60,50 +62,84 @@ import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
 public class MapJarsTiny {
+	/** Running both remappers at once roughly doubles the memory needed, so small heaps will do them one after the other */
+	private static final long PARALLEL_HEAP_THRESHOLD = 1536L * 1024 * 1024;
+
 	public void mapJars(MinecraftProvider jarProvider, MinecraftMappedProvider mapProvider, Project project) throws IOException {
 		String fromM = "official";
 
 		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 		MappingsProvider mappingsProvider = extension.getMappingsProvider();
 
-		Path[] classpath = mapProvider.getMapperPaths().stream().map(File::toPath).toArray(Path[]::new);
+		Path[] classpath = ClassPathSnapshot.of(project, mapProvider.getMapperPaths().stream().map(File::toPath).toArray(Path[]::new));
 
 		Path input = jarProvider.getJar().toPath();
 		Path outputMapped = mapProvider.getMappedJar().toPath();
 		Path outputIntermediary = mapProvider.getIntermediaryJar().toPath();
 
-		for (String toM : Arrays.asList("named", "intermediary")) {
-			Path output = "named".equals(toM) ? outputMapped : outputIntermediary;
-
-			project.getLogger().lifecycle(":remapping minecraft (TinyRemapper, " + fromM + " -> " + toM + ")");
-
-			TinyRemapper remapper = TinyRemapper.newRemapper()
-					.withMappings(mappingsProvider.mcRemappingFactory.create(fromM, toM))
-					.ignoreConflicts(extension.shouldBulldozeMappings())
-					.renameInvalidLocals(true)
-					.rebuildSourceFilenames(true)
-					.build();
-
-			try (OutputConsumerPath outputConsumer = new OutputConsumerPath(output)) {
-				outputConsumer.addNonClassFiles(input, NonClassCopyMode.FIX_META_INF, null);
-				remapper.readClassPath(classpath);
-				remapper.readInputs(input);
-				remapper.apply(outputConsumer);
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to remap JAR " + input + " with mappings from " + mappingsProvider.MAPPINGS_TINY, e);
+		if (Runtime.getRuntime().maxMemory() < PARALLEL_HEAP_THRESHOLD) {
+			for (String toM : Arrays.asList("named", "intermediary")) {
+				project.getLogger().lifecycle(":remapping minecraft (TinyRemapper, " + fromM + " -> " + toM + ")");
+				remap(extension, mappingsProvider, fromM, toM, classpath, input, "named".equals(toM) ? outputMapped : outputIntermediary);
+			}
+		} else {
+			project.getLogger().lifecycle(":remapping minecraft (TinyRemapper, " + fromM + " -> named, intermediary)");
+
+			//TinyRemapper's mappings are fixed once it is built, so the best that can be done is to have both targets share the time spent reading
+			ExecutorService executor = Executors.newFixedThreadPool(2, new DaemonThreadFactory("Loom Minecraft Remapper"));
+			try {
+				Future<?> named = executor.submit(() -> remap(extension, mappingsProvider, fromM, "named", classpath, input, outputMapped));
+				Future<?> intermediary = executor.submit(() -> remap(extension, mappingsProvider, fromM, "intermediary", classpath, input, outputIntermediary));
+
+				RuntimeException failure = null;
+				for (Future<?> future : Arrays.asList(named, intermediary)) {
+					try {
+						future.get();
+					} catch (ExecutionException e) {
+						RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+
+						if (failure == null) {
+							failure = cause;
+						} else {
+							failure.addSuppressed(cause);
+						}
+					}
+				}
+
+				if (failure != null) throw failure;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted whilst remapping " + input, e);
 			} finally {
-				remapper.finish();
+				executor.shutdownNow();
 			}
 		}
 	}
 
+	private static void remap(LoomGradleExtension extension, MappingsProvider mappingsProvider, String fromM, String toM, Path[] classpath, Path input, Path output) {
+		TinyRemapper remapper = TinyRemapper.newRemapper()
+				.withMappings(mappingsProvider.mcRemappingFactory.create(fromM, toM))
+				.ignoreConflicts(extension.shouldBulldozeMappings())
+				.renameInvalidLocals(true)
+				.rebuildSourceFilenames(true)
+				.build();
+
+		try (OutputConsumerPath outputConsumer = new OutputConsumerPath(output)) {
+			outputConsumer.addNonClassFiles(input, NonClassCopyMode.FIX_META_INF, null);
+			remapper.readClassPath(classpath);
+			remapper.readInputs(input);
+			remapper.apply(outputConsumer);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to remap JAR " + input + " to " + toM + " with mappings from " + mappingsProvider.MAPPINGS_TINY, e);
+		} finally {
+			remapper.finish();
+		}
+	}
+
 	public static void transform(Project project, Set<Pair<String, String>> ats, MinecraftMappedProvider jarProvider, MappingsProvider mappingProvider) throws IOException {
 		project.getLogger().info("Reading in mappings...");
 
-		Mappings mappings;
-		try (InputStream in = new FileInputStream(mappingProvider.MAPPINGS_TINY)) {
-			mappings = net.fabricmc.mappings.MappingsProvider.readTinyMappings(in, false);
-		}
+		Mappings mappings = mappingProvider.getMappings();
 
 		project.getLogger().info("Read in " + mappings.getClassEntries().size() + " classes");
 		project.getLogger().info("Working out what we have to do");
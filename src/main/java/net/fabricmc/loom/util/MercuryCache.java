@@ -0,0 +1,146 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Supplier;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.cadixdev.mercury.Mercury;
+
+/**
+ * Keeps hold of idle {@link Mercury} instances so the JDT class path each has set up can be reused by the next sources jar.
+ *
+ * <p>Instances are kept by what they were made for, so a change in the mappings or class path can never pick up one made before.
+ * At most {@link #getMaxIdle()} are kept at once, with the least recently used given up first when there are too many.
+ */
+public class MercuryCache {
+	private final Map<String, Deque<Mercury>> idle = new LinkedHashMap<>(16, 0.75F, true);
+	private int maxIdle;
+	private int idleCount;
+	private long hits, misses, evictions;
+
+	public MercuryCache(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Make the key for Mercury instances remapping in the given direction with the given mappings and class path.
+	 *
+	 * @param direction Which way the mappings go, such as {@code intermediary -> named}
+	 * @param mappings The tiny mappings the instance's {@link org.cadixdev.lorenz.MappingSet MappingSet} is read from
+	 * @param classPath The instance's class path, in order
+	 * @return The key to {@link #borrow(String, Supplier)} instances with
+	 * @throws IOException If there is a problem hashing the mappings
+	 */
+	public static String key(String direction, File mappings, List<Path> classPath) throws IOException {
+		Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putString(direction, StandardCharsets.UTF_8).putString(Checksum.sha256(mappings), StandardCharsets.UTF_8);
+
+		for (Path entry : classPath) {
+			File file = entry.toFile();
+			hasher.putString(file.getAbsolutePath(), StandardCharsets.UTF_8).putLong(file.length()).putLong(file.lastModified());
+		}
+
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * Take an idle instance made for the given key, or make a new one if there aren't any.
+	 * It should be given back with {@link #giveBack(String, Mercury)} once it is no longer needed.
+	 */
+	public Mercury borrow(String key, Supplier<Mercury> factory) {
+		synchronized (this) {
+			Deque<Mercury> instances = idle.get(key);
+
+			if (instances != null && !instances.isEmpty()) {
+				hits++;
+				idleCount--;
+				return instances.pop();
+			}
+
+			misses++;
+		}
+
+		return factory.get();
+	}
+
+	/**
+	 * Give back an instance made for the given key, which might be dropped straight away if there are already too many idle.
+	 */
+	public synchronized void giveBack(String key, Mercury mercury) {
+		idle.computeIfAbsent(key, k -> new ArrayDeque<>()).push(mercury);
+		idleCount++;
+		trim();
+	}
+
+	private void trim() {
+		for (Iterator<Entry<String, Deque<Mercury>>> it = idle.entrySet().iterator(); idleCount > maxIdle && it.hasNext();) {
+			Deque<Mercury> instances = it.next().getValue();
+
+			while (idleCount > maxIdle && !instances.isEmpty()) {
+				instances.removeLast();
+				idleCount--;
+				evictions++;
+			}
+
+			if (instances.isEmpty()) it.remove();
+		}
+	}
+
+	public synchronized int getMaxIdle() {
+		return maxIdle;
+	}
+
+	public synchronized void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+		trim();
+	}
+
+	/**
+	 * Drop every idle instance, such as once a build has finished and they won't be needed again for a while.
+	 */
+	public synchronized void clear() {
+		evictions += idleCount;
+		idle.clear();
+		idleCount = 0;
+	}
+
+	public synchronized String getStats() {
+		return String.format("%d idle, %d hits, %d misses, %d evictions", idleCount, hits, misses, evictions);
+	}
+}
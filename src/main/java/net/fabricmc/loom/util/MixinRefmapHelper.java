@@ -27,6 +27,7 @@ package net.fabricmc.loom.util;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Set;
@@ -52,17 +53,7 @@ public final class MixinRefmapHelper {
 			return ZipUtil.transformEntries(output, mixinFilenames.stream().map((f) -> new ZipEntryTransformerEntry(f, new StringZipEntryTransformer("UTF-8") {
 				@Override
 				protected String transform(ZipEntry zipEntry, String input) throws IOException {
-					JsonObject json = GSON.fromJson(input, JsonObject.class);
-
-					if (!json.has("refmap")) {
-						json.addProperty("refmap", filename);
-					}
-
-					if (!json.has("minVersion") && mixinVersion != null) {
-						json.addProperty("minVersion", mixinVersion);
-					}
-
-					return GSON.toJson(json);
+					return GSON.toJson(addRefmap(GSON.fromJson(input, JsonObject.class), filename, mixinVersion));
 				}
 			})).toArray(ZipEntryTransformerEntry[]::new));
 		} else {
@@ -70,6 +61,58 @@ public final class MixinRefmapHelper {
 		}
 	}
 
+	/**
+	 * Create a {@link JarEntryProcessor} which does the same as {@link #addRefmapName(String, String, Path)} whilst the jar is being written.
+	 *
+	 * @param filename The name of the refmap to give mixin configs without one
+	 * @param mixinVersion The minimum mixin version to give mixin configs without one, or <code>null</code> to leave them without
+	 * @return A processor which adds the refmap name and minimum version to mixin configs in the root of the jar
+	 */
+	public static JarEntryProcessor refmapProcessor(String filename, String mixinVersion) {
+		return new JarEntryProcessor() {
+			@Override
+			public boolean processes(String name) {
+				//JSON file in root directory
+				return name.endsWith(".json") && !name.contains("/") && !name.contains("\\");
+			}
+
+			@Override
+			public byte[] process(String name, byte[] contents) {
+				JsonObject json;
+				try {
+					json = GSON.fromJson(new String(contents, StandardCharsets.UTF_8), JsonObject.class);
+				} catch (RuntimeException e) {
+					return null; //Not something we can understand, so certainly not a mixin config
+				}
+
+				if (!isMixinConfig(json, true)) return null;
+				return GSON.toJson(addRefmap(json, filename, mixinVersion)).getBytes(StandardCharsets.UTF_8);
+			}
+		};
+	}
+
+	private static JsonObject addRefmap(JsonObject json, String filename, String mixinVersion) {
+		if (!json.has("refmap")) {
+			json.addProperty("refmap", filename);
+		}
+
+		if (!json.has("minVersion") && mixinVersion != null) {
+			json.addProperty("minVersion", mixinVersion);
+		}
+
+		return json;
+	}
+
+	private static boolean isMixinConfig(JsonObject json, boolean onlyWithoutRefmap) {
+		if (json == null) return false;
+
+		boolean hasMixins = json.has("mixins") && json.get("mixins").isJsonArray();
+		boolean hasClient = json.has("client") && json.get("client").isJsonArray();
+		boolean hasServer = json.has("server") && json.get("server").isJsonArray();
+
+		return json.has("package") && (hasMixins || hasClient || hasServer) && (!onlyWithoutRefmap || !json.has("refmap") || !json.has("minVersion"));
+	}
+
 	private static Set<String> findMixins(File output, boolean onlyWithoutRefmap) {
 		// first, identify all of the mixin files
 		Set<String> mixinFilename = new HashSet<>();
@@ -80,17 +123,9 @@ public final class MixinRefmapHelper {
 				try (InputStreamReader inputStreamReader = new InputStreamReader(stream)) {
 					JsonObject json = GSON.fromJson(inputStreamReader, JsonObject.class);
 
-					if (json != null) {
-						boolean hasMixins = json.has("mixins") && json.get("mixins").isJsonArray();
-						boolean hasClient = json.has("client") && json.get("client").isJsonArray();
-						boolean hasServer = json.has("server") && json.get("server").isJsonArray();
-
-                        if (json.has("package") && (hasMixins || hasClient || hasServer)) {
-                            if (!onlyWithoutRefmap || !json.has("refmap") || !json.has("minVersion")) {
-                                mixinFilename.add(entry.getName());
-                            }
-                        }
-                    }
+					if (isMixinConfig(json, onlyWithoutRefmap)) {
+						mixinFilename.add(entry.getName());
+					}
                 } catch (Exception e) {
                     // ...
                 }
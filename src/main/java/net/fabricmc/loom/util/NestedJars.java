@@ -26,11 +26,14 @@ package net.fabricmc.loom.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 
@@ -72,27 +75,68 @@ public class NestedJars {
 		return ZipUtil.transformEntries(modJar, single(new ZipEntryTransformerEntry("fabric.mod.json", new StringZipEntryTransformer() {
 			@Override
 			protected String transform(ZipEntry zipEntry, String input) throws IOException {
-				JsonObject json = GSON.fromJson(input, JsonObject.class);
-				JsonArray nestedJars = json.getAsJsonArray("jars");
+				return addJars(input, containedJars);
+			}
+		})));
+	}
 
-				if (nestedJars == null || !json.has("jars")) {
-					nestedJars = new JsonArray();
-				}
+	/**
+	 * Create a {@link JarEntryProcessor} which does the same as {@link #addNestedJars(Project, Path)} whilst the jar is being written.
+	 *
+	 * @param project The project whose included jars are to be nested
+	 * @return A processor which adds the included jars and lists them in the fabric.mod.json, or <code>null</code> if there are none to include
+	 */
+	public static JarEntryProcessor nestingProcessor(Project project) {
+		List<File> containedJars = getContainedJars(project);
+
+		if (containedJars.isEmpty()) {
+			return null;
+		}
+
+		return new JarEntryProcessor() {
+			@Override
+			public boolean processes(String name) {
+				return "fabric.mod.json".equals(name);
+			}
+
+			@Override
+			public byte[] process(String name, byte[] contents) {
+				return addJars(new String(contents, StandardCharsets.UTF_8), containedJars).getBytes(StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public Map<String, Path> extraEntries() {
+				Map<String, Path> entries = new LinkedHashMap<>();
 
 				for (File file : containedJars) {
-					JsonObject jsonObject = new JsonObject();
-					jsonObject.addProperty("file", "META-INF/jars/" + file.getName());
-					nestedJars.add(jsonObject);
+					entries.put("META-INF/jars/" + file.getName(), file.toPath());
 				}
 
-				json.add("jars", nestedJars);
-
-				return GSON.toJson(json);
+				return entries;
 			}
-		})));
+		};
+	}
+
+	private static String addJars(String modJson, List<File> containedJars) {
+		JsonObject json = GSON.fromJson(modJson, JsonObject.class);
+		JsonArray nestedJars = json.getAsJsonArray("jars");
+
+		if (nestedJars == null || !json.has("jars")) {
+			nestedJars = new JsonArray();
+		}
+
+		for (File file : containedJars) {
+			JsonObject jsonObject = new JsonObject();
+			jsonObject.addProperty("file", "META-INF/jars/" + file.getName());
+			nestedJars.add(jsonObject);
+		}
+
+		json.add("jars", nestedJars);
+
+		return GSON.toJson(json);
 	}
 
-	private static List<File> getContainedJars(Project project) {
+	public static List<File> getContainedJars(Project project) {
 		List<File> fileList = new ArrayList<>();
 
 		Configuration configuration = project.getConfigurations().getByName(Constants.INCLUDE);
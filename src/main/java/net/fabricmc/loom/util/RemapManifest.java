@@ -0,0 +1,242 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * A record of what every entry in a jar looked like when it was last remapped, along with the remapped output it produced.
+ *
+ * <p>Each class records both the hash of its contents and of its {@link ClassPathSnapshot#stripCode(ClassReader) signature}.
+ * When only method bodies have changed nothing else in the jar can remap any differently, so only the changed classes need remapping.
+ * Anything else, from an added class to a changed resource or different mappings, needs the whole jar remapping again.
+ */
+public class RemapManifest {
+	private static final String HEADER = "loom-remap-manifest\t1";
+	private static final HashFunction HASHING = Hashing.murmur3_128();
+
+	public static final class EntryHash {
+		final String content;
+		/** The hash of the class' signature, or <code>null</code> if the entry isn't a class */
+		final String signature;
+
+		EntryHash(String content, String signature) {
+			this.content = content;
+			this.signature = signature;
+		}
+	}
+
+	private final String key;
+	private final long outputSize, outputModified;
+	private final Map<String, EntryHash> entries;
+
+	private RemapManifest(String key, long outputSize, long outputModified, Map<String, EntryHash> entries) {
+		this.key = key;
+		this.outputSize = outputSize;
+		this.outputModified = outputModified;
+		this.entries = entries;
+	}
+
+	/**
+	 * Hash every entry in the given jar.
+	 *
+	 * @param jar The jar to hash
+	 * @return The hashes of every file entry in the given jar, by name
+	 * @throws IOException If there is a problem reading the jar
+	 */
+	public static Map<String, EntryHash> hash(Path jar) throws IOException {
+		Map<String, EntryHash> entries = new LinkedHashMap<>();
+
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+				ZipEntry entry = it.nextElement();
+				if (entry.isDirectory()) continue;
+
+				byte[] contents;
+				try (InputStream in = zip.getInputStream(entry)) {
+					contents = ByteStreams.toByteArray(in);
+				}
+
+				String signature = entry.getName().endsWith(".class") ? HASHING.hashBytes(ClassPathSnapshot.stripCode(new ClassReader(contents))).toString() : null;
+				entries.put(entry.getName(), new EntryHash(HASHING.hashBytes(contents).toString(), signature));
+			}
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Read the manifest from the given file.
+	 *
+	 * @param file The file the manifest was saved to
+	 * @return The manifest, or <code>null</code> if the file doesn't exist or can't be read
+	 */
+	public static RemapManifest read(Path file) {
+		if (!Files.exists(file)) return null;
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			if (!HEADER.equals(reader.readLine())) return null;
+
+			String key = reader.readLine();
+			String[] output = reader.readLine().split("\t");
+			Map<String, EntryHash> entries = new LinkedHashMap<>();
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+				entries.put(parts[0], new EntryHash(parts[1], parts.length > 2 ? parts[2] : null));
+			}
+
+			return new RemapManifest(key, Long.parseLong(output[0]), Long.parseLong(output[1]), entries);
+		} catch (IOException | RuntimeException e) {
+			return null; //Something is wrong with the manifest, the jar will just have to be remapped from scratch
+		}
+	}
+
+	/**
+	 * Save a manifest for the given entries remapped with the given key into the given output.
+	 *
+	 * @param file The file to save the manifest to
+	 * @param key The hash of everything besides the input which the output depends on
+	 * @param output The remapped jar the entries produced
+	 * @param entries The hashes of the input's entries, from {@link #hash(Path)}
+	 * @throws IOException If there is a problem writing the manifest
+	 */
+	public static void write(Path file, String key, Path output, Map<String, EntryHash> entries) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				writer.write(HEADER);
+				writer.newLine();
+				writer.write(key);
+				writer.newLine();
+				writer.write(Files.size(output) + "\t" + Files.getLastModifiedTime(output).toMillis());
+				writer.newLine();
+
+				for (Map.Entry<String, EntryHash> entry : entries.entrySet()) {
+					writer.write(entry.getKey());
+					writer.write('\t');
+					writer.write(entry.getValue().content);
+
+					if (entry.getValue().signature != null) {
+						writer.write('\t');
+						writer.write(entry.getValue().signature);
+					}
+
+					writer.newLine();
+				}
+			}
+
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Work out which classes need remapping for the previous output to match the given entries.
+	 *
+	 * @param key The hash of everything besides the input which the output depends on
+	 * @param output The previous remapped jar
+	 * @param current The hashes of the input's current entries, from {@link #hash(Path)}
+	 * @return The names of the class entries which need remapping, or <code>null</code> if the whole jar needs remapping
+	 * @throws IOException If there is a problem checking the previous output
+	 */
+	public Set<String> findChangedClasses(String key, Path output, Map<String, EntryHash> current) throws IOException {
+		if (!this.key.equals(key) || !Files.exists(output) || Files.size(output) != outputSize || Files.getLastModifiedTime(output).toMillis() != outputModified) {
+			return null;
+		}
+
+		if (!entries.keySet().equals(current.keySet())) return null; //Something has been added or removed
+		Set<String> changed = new HashSet<>();
+
+		for (Map.Entry<String, EntryHash> entry : current.entrySet()) {
+			EntryHash now = entry.getValue();
+			EntryHash then = entries.get(entry.getKey());
+			if (now.content.equals(then.content)) continue;
+
+			//Changed resources might be transformed after remapping, and changed signatures can change how other classes remap
+			if (now.signature == null || !Objects.equals(now.signature, then.signature)) return null;
+
+			changed.add(entry.getKey());
+		}
+
+		return changed.isEmpty() ? Collections.emptySet() : changed;
+	}
+
+	/**
+	 * Write a jar containing the signatures of every class in the given jar except those given, to be used as class path for those given.
+	 *
+	 * @param jar The jar to take classes from
+	 * @param excluding The class entries to leave out
+	 * @param stubs Where to write the stub jar to
+	 * @throws IOException If there is a problem reading or writing the jars
+	 */
+	public static void writeStubs(Path jar, Set<String> excluding, Path stubs) throws IOException {
+		try (ZipFile zip = new ZipFile(jar.toFile()); ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(stubs)))) {
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+				ZipEntry entry = it.nextElement();
+				String name = entry.getName();
+				if (entry.isDirectory() || !name.endsWith(".class") || excluding.contains(name)) continue;
+
+				try (InputStream in = zip.getInputStream(entry)) {
+					out.putNextEntry(new ZipEntry(name));
+					out.write(ClassPathSnapshot.stripCode(new ClassReader(in)));
+					out.closeEntry();
+				}
+			}
+		}
+	}
+}
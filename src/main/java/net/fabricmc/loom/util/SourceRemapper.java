@@ -26,8 +26,18 @@ package net.fabricmc.loom.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.cadixdev.lorenz.MappingSet;
 import org.cadixdev.lorenz.io.MappingsReader;
@@ -46,47 +56,145 @@ import net.fabricmc.mappings.Mappings;
 import net.fabricmc.mappings.MethodEntry;
 import net.fabricmc.stitch.util.StitchUtil;
 
-
+/**
+ * Remaps a batch of sources jars in the same direction together, spreading them over as many threads as {@link LoomGradleExtension#sourceRemapThreads}
+ * and memory allow. Each thread borrows its own {@link Mercury} from the extension's {@link MercuryCache}, so the class path each has set up is kept for the next batch.
+ */
 public class SourceRemapper {
+	/** Roughly how much heap each concurrent Mercury needs for its class path and the sources it is parsing */
+	private static final long REMAPPER_HEAP = 1024L * 1024 * 1024;
+
+	private static final class Job {
+		final File source, destination;
+		final Runnable whenDone;
+
+		Job(File source, File destination, Runnable whenDone) {
+			this.source = source;
+			this.destination = destination;
+			this.whenDone = whenDone;
+		}
+	}
+
+	private final Project project;
+	private final boolean toNamed;
+	private final List<Job> jobs = new ArrayList<>();
+
+	public SourceRemapper(Project project, boolean toNamed) {
+		this.project = project;
+		this.toNamed = toNamed;
+	}
+
 	public static void remapSources(Project project, File source, File destination, boolean toNamed) throws Exception {
-		remapSourcesInner(project, source, destination, toNamed);
-		// TODO: FIXME - WORKAROUND https://github.com/FabricMC/fabric-loom/issues/45
-		System.gc();
+		SourceRemapper remapper = new SourceRemapper(project, toNamed);
+		remapper.scheduleRemapSources(source, destination, () -> { });
+		remapper.remapAll();
 	}
 
-	private static void remapSourcesInner(Project project, File source, File destination, boolean toNamed) throws Exception {
+	/**
+	 * Add a sources jar to be remapped by the next call to {@link #remapAll()}.
+	 *
+	 * @param whenDone Called once the sources have been remapped without failing
+	 */
+	public void scheduleRemapSources(File source, File destination, Runnable whenDone) {
+		jobs.add(new Job(source, destination, whenDone));
+	}
+
+	/**
+	 * Remap every scheduled sources jar, throwing the first failure (with any others suppressed) once all of them have been tried.
+	 */
+	public void remapAll() throws IOException {
+		if (jobs.isEmpty()) return;
+
 		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 		MappingsProvider mappingsProvider = extension.getMappingsProvider();
+		String direction = toNamed ? "intermediary -> named" : "named -> intermediary";
 
-		@SuppressWarnings("resource") //Doesn't need closing as TinyRemapper doesn't do anything in Closeable#close
-		MappingSet mappings = extension.getOrCreateSrcMappingCache(toNamed ? 1 : 0, () -> {
-			try {
-				Mappings m = mappingsProvider.getMappings();
-				project.getLogger().lifecycle(":loading " + (toNamed ? "intermediary -> named" : "named -> intermediary") + " source mappings");
-				return new TinyReader(m, toNamed ? "intermediary" : "named", toNamed ? "named" : "intermediary").read();
-			} catch (Exception e) {
-				throw new RuntimeException(e);
+		//Anything Gradle needs to resolve has to be done now, rather than on the remapping threads
+		Mappings mappings = mappingsProvider.getMappings();
+		List<Path> classPath = new ArrayList<>(getClassPath(project, toNamed));
+
+		for (Path file : extension.getUnmappedMods()) {
+			if (Files.isRegularFile(file)) {
+				classPath.add(file);
 			}
-		});
+		}
+
+		classPath.add(extension.getMinecraftMappedProvider().MINECRAFT_MAPPED_JAR.toPath());
+		classPath.add(extension.getMinecraftMappedProvider().MINECRAFT_INTERMEDIARY_JAR.toPath());
 
-		project.getLogger().info(":remapping source jar");
+		MercuryCache cache = extension.getSrcMercuryCache();
+		String key = MercuryCache.key(direction, mappingsProvider.MAPPINGS_TINY, classPath);
 
-		Mercury mercury = extension.getOrCreateSrcMercuryCache(toNamed ? 1 : 0, () -> {
-			Mercury m = createMercuryWithClassPath(project, toNamed);
+		int threads = getThreads(Math.min(extension.sourceRemapThreads, jobs.size()));
+		project.getLogger().info(":remapping " + jobs.size() + " source jar(s) across " + threads + " thread(s)");
 
-			for (Path file : extension.getUnmappedMods()) {
-				if (Files.isRegularFile(file)) {
-					m.getClassPath().add(file);
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("Loom Source Remapper"));
+		try {
+			List<Future<?>> tasks = new ArrayList<>(jobs.size());
+
+			for (Job job : jobs) {
+				tasks.add(executor.submit(() -> {
+					Mercury mercury = cache.borrow(key, () -> {
+						//Each Mercury gets its own mappings, as a MappingSet is not safe to share between threads
+						project.getLogger().lifecycle(":loading " + direction + " source mappings");
+						MappingSet mappingSet = new TinyReader(mappings, toNamed ? "intermediary" : "named", toNamed ? "named" : "intermediary").read();
+
+						Mercury m = new Mercury();
+						m.getClassPath().addAll(classPath);
+						m.getProcessors().add(MercuryRemapper.create(mappingSet));
+						return m;
+					});
+
+					try {
+						remapSources(mercury, job.source, job.destination);
+					} finally {
+						cache.giveBack(key, mercury);
+					}
+
+					job.whenDone.run();
+					return null;
+				}));
+			}
+
+			Exception failure = null;
+			for (Future<?> task : tasks) {
+				try {
+					task.get();
+				} catch (ExecutionException e) {
+					Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+
+					if (failure == null) {
+						failure = cause;
+					} else {
+						failure.addSuppressed(cause);
+					}
 				}
 			}
 
-			m.getClassPath().add(extension.getMinecraftMappedProvider().MINECRAFT_MAPPED_JAR.toPath());
-			m.getClassPath().add(extension.getMinecraftMappedProvider().MINECRAFT_INTERMEDIARY_JAR.toPath());
+			if (failure instanceof IOException) throw (IOException) failure;
+			if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+			if (failure != null) throw new RuntimeException("Failed to remap sources", failure);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted whilst remapping sources", e);
+		} finally {
+			executor.shutdownNow();
+			jobs.clear();
+		}
+	}
 
-			m.getProcessors().add(MercuryRemapper.create(mappings));
+	/**
+	 * Limit the given number of threads to how many concurrent Mercury instances there is heap for.
+	 *
+	 * @param wanted The most threads which could be used
+	 * @return How many threads to use, which is always at least one
+	 */
+	public static int getThreads(int wanted) {
+		return (int) Math.max(1, Math.min(wanted, Runtime.getRuntime().maxMemory() / REMAPPER_HEAP));
+	}
 
-			return m;
-		});
+	private void remapSources(Mercury mercury, File source, File destination) throws IOException {
+		project.getLogger().info(":remapping source jar " + source.getName());
 
 		if (source.equals(destination)) {
 			if (source.isDirectory()) {
@@ -102,6 +210,11 @@ public class SourceRemapper {
 			}
 		}
 
+		if (!source.isDirectory() && !destination.isDirectory()) {
+			remapJar(mercury, source, destination);
+			return;
+		}
+
 		Path srcPath = source.toPath();
 		boolean isSrcTmp = false;
 
@@ -138,6 +251,51 @@ public class SourceRemapper {
 		}
 	}
 
+	/**
+	 * Remap a sources jar into another jar. Only the Java files are extracted, as JDT can only parse sources from disk,
+	 * everything else is copied across from the original jar without being decompressed.
+	 */
+	private void remapJar(Mercury mercury, File source, File destination) throws IOException {
+		Path srcPath = Files.createTempDirectory("fabric-loom-src");
+		File rewritten = new File(destination.getPath() + ".tmp");
+
+		try {
+			try (ZipFile zip = new ZipFile(source)) {
+				for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+					ZipEntry entry = it.nextElement();
+					if (entry.isDirectory() || !isJavaFile(entry.getName())) continue;
+
+					Path file = srcPath.resolve(entry.getName()).normalize();
+					if (!file.startsWith(srcPath)) throw new IOException("Sources entry " + entry.getName() + " is outside of the jar!");
+
+					Files.createDirectories(file.getParent());
+					try (InputStream in = zip.getInputStream(entry)) {
+						Files.copy(in, file);
+					}
+				}
+			}
+
+			Files.deleteIfExists(rewritten.toPath());
+			try (StitchUtil.FileSystemDelegate dstFs = StitchUtil.getJarFileSystem(rewritten, true)) {
+				mercury.rewrite(srcPath, dstFs.get().getPath("/"));
+			} catch (Exception e) {
+				project.getLogger().warn("Could not remap " + source.getName() + " fully!", e);
+			}
+
+			if (destination.exists() && !destination.delete()) {
+				throw new RuntimeException("Could not delete " + destination.getName() + "!");
+			}
+
+			try (DeflatedZipWriter out = new DeflatedZipWriter(destination)) {
+				if (rewritten.exists()) out.copyRaw(rewritten, name -> true);
+				out.copyRaw(source, name -> !isJavaFile(name));
+			}
+		} finally {
+			Files.walkFileTree(srcPath, new DeletingFileVisitor());
+			Files.deleteIfExists(rewritten.toPath());
+		}
+	}
+
 	private static void copyNonJavaFiles(Path from, Path to, Project project, File source) throws IOException {
 		Files.walk(from).forEach(path -> {
 			Path targetPath = to.resolve(from.relativize(path).toString());
@@ -154,24 +312,33 @@ public class SourceRemapper {
 
 	public static Mercury createMercuryWithClassPath(Project project, boolean toNamed) {
 		Mercury m = new Mercury();
+		m.getClassPath().addAll(getClassPath(project, toNamed));
+		return m;
+	}
+
+	public static List<Path> getClassPath(Project project, boolean toNamed) {
+		List<Path> classPath = new ArrayList<>();
 
 		for (File file : project.getConfigurations().getByName(Constants.MINECRAFT_DEPENDENCIES).getFiles()) {
-			m.getClassPath().add(file.toPath());
+			classPath.add(file.toPath());
 		}
 
 		if (!toNamed) {
 			for (File file : project.getConfigurations().getByName("compileClasspath").getFiles()) {
-				m.getClassPath().add(file.toPath());
+				classPath.add(file.toPath());
 			}
 		}
 
-		return m;
+		return classPath;
 	}
 
 	private static boolean isJavaFile(Path path) {
-		String name = path.getFileName().toString();
+		return isJavaFile(path.getFileName().toString());
+	}
+
+	private static boolean isJavaFile(String name) {
 		// ".java" is not a valid java file
-		return name.endsWith(".java") && name.length() != 5;
+		return name.endsWith(".java") && name.length() != 5 && name.charAt(name.length() - 6) != '/';
 	}
 
 	public static class TinyReader extends MappingsReader {
@@ -0,0 +1,163 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.assets;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A record of which asset files have already had their hash checked, along with the size and modification time they had when they were.
+ * A file which still has the same size and modification time can be assumed to still have the same hash without reading it again.
+ */
+public class VerifiedAssetIndex {
+	private static final String HEADER = "loom-verified-assets\t1";
+
+	private static class Entry {
+		final long size, lastModified;
+		final String sha1;
+
+		Entry(long size, long lastModified, String sha1) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.sha1 = sha1;
+		}
+	}
+
+	private final Path file;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean dirty;
+
+	private VerifiedAssetIndex(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Load the index from the given file, starting empty if the file doesn't exist or can't be read.
+	 *
+	 * @param file The file the index is (or will be) saved to
+	 * @return The loaded index
+	 */
+	public static VerifiedAssetIndex load(Path file) {
+		VerifiedAssetIndex index = new VerifiedAssetIndex(file);
+
+		if (Files.exists(file)) {
+			try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				if (HEADER.equals(reader.readLine())) {
+					String line;
+
+					while ((line = reader.readLine()) != null) {
+						String[] parts = line.split("\t");
+						if (parts.length != 4) continue;
+
+						index.entries.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+					}
+				}
+			} catch (IOException | NumberFormatException e) {
+				//Start again then, it'll just mean rehashing everything
+				index.entries.clear();
+				index.dirty = true;
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Whether the given file was previously verified to have the given hash, and hasn't changed since.
+	 *
+	 * @param key The name the file is recorded under
+	 * @param asset The file to check
+	 * @param sha1 The expected SHA-1 hash of the file
+	 * @return Whether the file can be assumed to have the given hash
+	 */
+	public boolean isVerified(String key, File asset, String sha1) {
+		Entry entry = entries.get(key);
+
+		return entry != null && entry.sha1.equals(sha1) && entry.size == asset.length() && entry.lastModified == asset.lastModified();
+	}
+
+	/**
+	 * Record the given file as having been verified to have the given hash.
+	 *
+	 * @param key The name to record the file under
+	 * @param asset The file which has been verified
+	 * @param sha1 The SHA-1 hash the file was found to have
+	 */
+	public void markVerified(String key, File asset, String sha1) {
+		entries.put(key, new Entry(asset.length(), asset.lastModified(), sha1));
+		dirty = true;
+	}
+
+	/**
+	 * Save the index back to the file it was loaded from, if anything has changed.
+	 *
+	 * @throws IOException If an exception occurs writing the file
+	 */
+	public void save() throws IOException {
+		if (!dirty) return;
+
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				writer.write(HEADER);
+				writer.newLine();
+
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					Entry value = entry.getValue();
+
+					writer.write(entry.getKey());
+					writer.write('\t');
+					writer.write(Long.toString(value.size));
+					writer.write('\t');
+					writer.write(Long.toString(value.lastModified));
+					writer.write('\t');
+					writer.write(value.sha1);
+					writer.newLine();
+				}
+			}
+
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			dirty = false;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}